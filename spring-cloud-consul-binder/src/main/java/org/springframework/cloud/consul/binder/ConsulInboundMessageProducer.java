@@ -27,6 +27,7 @@ import com.ecwid.consul.v1.event.model.Event;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.cloud.consul.WatchThreads;
 import org.springframework.integration.endpoint.MessageProducerSupport;
 
 import static org.springframework.util.Base64Utils.decodeFromString;
@@ -51,7 +52,7 @@ public class ConsulInboundMessageProducer extends MessageProducerSupport {
 
 	public ConsulInboundMessageProducer(EventService eventService) {
 		this.eventService = eventService;
-		this.scheduler = Executors.newScheduledThreadPool(1);
+		this.scheduler = Executors.newScheduledThreadPool(1, WatchThreads.newThreadFactory("consul-events-"));
 		this.eventsRunnable = new Runnable() {
 
 			@Override
@@ -16,12 +16,26 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import com.ecwid.consul.v1.ConsistencyMode;
 import com.ecwid.consul.v1.ConsulClient;
 import com.ecwid.consul.v1.QueryParams;
 import com.ecwid.consul.v1.Response;
@@ -30,22 +44,41 @@ import io.micrometer.core.annotation.Timed;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.cloud.bootstrap.config.BootstrapPropertySource;
+import org.springframework.cloud.consul.StaleReads;
+import org.springframework.cloud.consul.WatchBackoff;
+import org.springframework.cloud.consul.WatchThreads;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScope;
 import org.springframework.cloud.endpoint.event.RefreshEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.CompositePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.FILES;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Watch.Strategy.PREFIX;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Watch.Strategy.SENTINEL;
 
 /**
  * @author Spencer Gibb
  */
-public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecycle {
+public class ConfigWatch implements ApplicationEventPublisherAware, ApplicationContextAware, SmartLifecycle {
+
+	/**
+	 * Prefix of the names of the threads running the watch.
+	 */
+	static final String CONFIG_WATCH_THREAD_NAME_PREFIX = "consul-config-watch-";
 
 	private static final Log log = LogFactory.getLog(ConfigWatch.class);
 
@@ -57,29 +90,65 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 
 	private final AtomicBoolean running = new AtomicBoolean(false);
 
-	private LinkedHashMap<String, Long> consulIndexes;
+	private final LinkedHashMap<String, Long> consulIndexes;
+
+	private final Map<String, Map<String, GetValue>> lastValues = new HashMap<>();
+
+	private final List<ScheduledFuture<?>> watchFutures = new ArrayList<>();
+
+	private final Map<String, WatchBackoff> backoffs = new ConcurrentHashMap<>();
+
+	private final Map<String, SentinelWatch> sentinelWatches = new ConcurrentHashMap<>();
+
+	private List<PrefixWatch> prefixWatches;
+
+	private ThreadPoolTaskScheduler refreshTaskScheduler;
+
+	private volatile RefreshCoalescer<ContextChange> refreshCoalescer;
+
+	private ExecutorService refreshExecutor;
+
+	private volatile RefreshDispatcher<String, ContextChange> refreshDispatcher;
 
 	private ApplicationEventPublisher publisher;
 
-	private boolean firstTime = true;
+	private ApplicationContext applicationContext;
+
+	private ConfigWatchMetrics metrics = ConfigWatchMetrics.NONE;
 
-	private ScheduledFuture<?> watchFuture;
+	private volatile boolean firstTime = true;
 
 	public ConfigWatch(ConsulConfigProperties properties, ConsulClient consul,
 			LinkedHashMap<String, Long> initialIndexes) {
-		this(properties, consul, initialIndexes, getTaskScheduler());
+		this(properties, consul, initialIndexes, getTaskScheduler(properties.getWatch().getConcurrency()));
 	}
 
 	public ConfigWatch(ConsulConfigProperties properties, ConsulClient consul,
 			LinkedHashMap<String, Long> initialIndexes, TaskScheduler taskScheduler) {
+		this(properties, consul, initialIndexes, Collections.emptyMap(), taskScheduler);
+	}
+
+	/**
+	 * @param properties the config properties
+	 * @param consul the consul client
+	 * @param initialIndexes the index every context was loaded at
+	 * @param initialValues the values every context was loaded with, a context without
+	 * values is considered changed on its first new index
+	 * @param taskScheduler the scheduler running the watches
+	 */
+	public ConfigWatch(ConsulConfigProperties properties, ConsulClient consul,
+			LinkedHashMap<String, Long> initialIndexes, Map<String, List<GetValue>> initialValues,
+			TaskScheduler taskScheduler) {
 		this.properties = properties;
 		this.consul = consul;
 		this.consulIndexes = new LinkedHashMap<>(initialIndexes);
 		this.taskScheduler = taskScheduler;
+		initialValues.forEach((context, values) -> this.lastValues.put(context, toValueMap(values, context)));
 	}
 
-	private static ThreadPoolTaskScheduler getTaskScheduler() {
-		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+	private static ThreadPoolTaskScheduler getTaskScheduler(int poolSize) {
+		ThreadPoolTaskScheduler taskScheduler = WatchThreads.newTaskScheduler(CONFIG_WATCH_THREAD_NAME_PREFIX,
+				poolSize);
 		taskScheduler.initialize();
 		return taskScheduler;
 	}
@@ -89,11 +158,54 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 		this.publisher = publisher;
 	}
 
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) {
+		this.applicationContext = applicationContext;
+	}
+
+	public void setMetrics(ConfigWatchMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	@Override
 	public void start() {
 		if (this.running.compareAndSet(false, true)) {
-			this.watchFuture = this.taskScheduler.scheduleWithFixedDelay(this::watchConfigKeyValues,
-					this.properties.getWatch().getDelay());
+			ConsulConfigProperties.Watch watch = this.properties.getWatch();
+			if (watch.getRefreshQuietPeriod() > 0) {
+				// flushes run on their own thread so they are not held up by blocking
+				// queries
+				this.refreshTaskScheduler = new ThreadPoolTaskScheduler();
+				this.refreshTaskScheduler.setThreadNamePrefix("consul-config-refresh-");
+				this.refreshTaskScheduler.setDaemon(true);
+				this.refreshTaskScheduler.initialize();
+				this.refreshCoalescer = new RefreshCoalescer<>(this.refreshTaskScheduler,
+						watch.getRefreshQuietPeriod(), watch.getRefreshMaxDelay(), this::dispatchChanges);
+			}
+			if (watch.isAsyncRefresh()) {
+				// refreshes run one at a time, changes detected meanwhile are combined
+				CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("consul-config-dispatch-");
+				threadFactory.setDaemon(true);
+				this.refreshExecutor = Executors.newSingleThreadExecutor(threadFactory);
+				this.refreshDispatcher = new RefreshDispatcher<>(this.refreshExecutor,
+						change -> change.data.getContext(), ContextChange::merge, this::publishChanges);
+			}
+			for (String context : getContexts()) {
+				this.metrics.watchStarted(context);
+			}
+			synchronized (this.watchFutures) {
+				if (isConcurrent()) {
+					// one blocking query per watched context or prefix, bounded by the
+					// scheduler pool size
+					for (Runnable task : createWatchTasks()) {
+						this.watchFutures.add(
+								this.taskScheduler.scheduleWithFixedDelay(task, this.properties.getWatch().getDelay()));
+					}
+				}
+				else {
+					this.watchFutures.add(this.taskScheduler.scheduleWithFixedDelay(this::watchConfigKeyValues,
+							this.properties.getWatch().getDelay()));
+				}
+			}
 		}
 	}
 
@@ -115,8 +227,26 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 
 	@Override
 	public void stop() {
-		if (this.running.compareAndSet(true, false) && this.watchFuture != null) {
-			this.watchFuture.cancel(true);
+		if (this.running.compareAndSet(true, false)) {
+			synchronized (this.watchFutures) {
+				for (ScheduledFuture<?> watchFuture : this.watchFutures) {
+					if (watchFuture != null) {
+						watchFuture.cancel(true);
+					}
+				}
+				this.watchFutures.clear();
+			}
+			// watches still running hand their changes to neither of them
+			this.refreshCoalescer = null;
+			this.refreshDispatcher = null;
+			if (this.refreshTaskScheduler != null) {
+				this.refreshTaskScheduler.shutdown();
+				this.refreshTaskScheduler = null;
+			}
+			if (this.refreshExecutor != null) {
+				this.refreshExecutor.shutdown();
+				this.refreshExecutor = null;
+			}
 		}
 	}
 
@@ -125,105 +255,835 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 		return this.running.get();
 	}
 
+	private boolean isConcurrent() {
+		return this.properties.getWatch().getConcurrency() > 1;
+	}
+
+	private boolean isPrefixStrategy() {
+		return this.properties.getWatch().getStrategy() == PREFIX;
+	}
+
+	private boolean isSentinelStrategy() {
+		return this.properties.getWatch().getStrategy() == SENTINEL;
+	}
+
+	private List<String> getContexts() {
+		synchronized (this.consulIndexes) {
+			return new ArrayList<>(this.consulIndexes.keySet());
+		}
+	}
+
+	private List<Runnable> createWatchTasks() {
+		List<Runnable> tasks = new ArrayList<>();
+		if (isPrefixStrategy()) {
+			for (PrefixWatch prefixWatch : getPrefixWatches()) {
+				tasks.add(new WatchTask(firstTime -> watchPrefix(prefixWatch, firstTime)));
+			}
+		}
+		else if (isSentinelStrategy()) {
+			for (String context : getContexts()) {
+				tasks.add(new WatchTask(firstTime -> watchSentinel(context, firstTime)));
+			}
+		}
+		else {
+			for (String context : getContexts()) {
+				tasks.add(new WatchTask(firstTime -> watchConfigKeyValues(context, firstTime)));
+			}
+		}
+		return tasks;
+	}
+
 	@Timed("consul.watch-config-keys")
 	public void watchConfigKeyValues() {
 		if (!this.running.get()) {
 			return;
 		}
-		for (String context : this.consulIndexes.keySet()) {
+		if (isPrefixStrategy()) {
+			for (PrefixWatch prefixWatch : getPrefixWatches()) {
+				watchPrefix(prefixWatch, this.firstTime);
+			}
+		}
+		else if (isSentinelStrategy()) {
+			for (String context : getContexts()) {
+				watchSentinel(context, this.firstTime);
+			}
+		}
+		else {
+			for (String context : getContexts()) {
+				watchConfigKeyValues(context, this.firstTime);
+			}
+		}
+		this.firstTime = false;
+	}
+
+	private void watchConfigKeyValues(String context, boolean firstTime) {
+		context = normalize(context);
+		WatchBackoff backoff = getBackoff(context);
+		if (backoff.isBackingOff()) {
+			if (log.isTraceEnabled()) {
+				log.trace("Backing off from watching context " + context + ": " + backoff);
+			}
+			return;
+		}
+
+		try {
+			Long currentIndex;
+			synchronized (this.consulIndexes) {
+				currentIndex = this.consulIndexes.get(context);
+			}
+			if (currentIndex == null) {
+				currentIndex = -1L;
+			}
 
-			// turn the context into a Consul folder path (unless our config format
-			// are FILES)
-			if (this.properties.getFormat() != FILES && !context.endsWith("/")) {
-				context = context + "/";
+			if (log.isTraceEnabled()) {
+				log.trace("watching consul for context '" + context + "' with index " + currentIndex);
 			}
 
-			try {
-				Long currentIndex = this.consulIndexes.get(context);
-				if (currentIndex == null) {
-					currentIndex = -1L;
+			long start = System.nanoTime();
+			Response<List<GetValue>> response = blockingRead(context, currentIndex);
+			long detectedAt = System.nanoTime();
+			backoff.succeeded();
+			this.metrics.queryCompleted(context, detectedAt - start,
+					response.getConsulIndex() != null && !response.getConsulIndex().equals(currentIndex));
+
+			handleContextResponse(context, currentIndex, response, detectedAt);
+		}
+		catch (Exception e) {
+			this.metrics.queryFailed(context);
+			handleWatchException(e, "context '" + context + "'", firstTime, backoff);
+		}
+	}
+
+	/**
+	 * Issues a blocking query on the given folder. With keys only detection the query
+	 * lists the keys only and the values are read once the index moved.
+	 * @param path the folder to read
+	 * @param currentIndex the index to block on
+	 * @return the values of the folder, or no values with the current index if the index
+	 * did not move
+	 */
+	private Response<List<GetValue>> blockingRead(String path, long currentIndex) {
+		if (!this.properties.getWatch().isKeysOnly()) {
+			return blockingQuery(currentIndex, params -> this.consul.getKVValues(path, getAclToken(), params));
+		}
+		Response<List<String>> keys = blockingQuery(currentIndex,
+				params -> this.consul.getKVKeysOnly(path, null, getAclToken(), params));
+		if (keys.getConsulIndex() == null || keys.getConsulIndex() == currentIndex) {
+			return new Response<>(null, keys.getConsulIndex(), keys.isConsulKnownLeader(),
+					keys.getConsulLastContact());
+		}
+		return readValues(path);
+	}
+
+	/**
+	 * Issues a blocking query on the given index. With a max staleness the query is
+	 * served by any server, and issued again to the leader without blocking if the
+	 * server is out of bounds, as it already waited.
+	 * @param currentIndex the index to block on
+	 * @param query the query to issue with the given parameters
+	 * @param <T> the type of the value read
+	 * @return the response of the query
+	 */
+	private <T> Response<T> blockingQuery(long currentIndex, Function<QueryParams, Response<T>> query) {
+		long waitTime = this.properties.getWatch().getWaitTime();
+		if (this.properties.getMaxStaleness() == null) {
+			return query.apply(new QueryParams(waitTime, currentIndex));
+		}
+		return StaleReads.read(this.properties.getMaxStaleness(),
+				QueryParams.Builder.builder().setConsistencyMode(ConsistencyMode.STALE).setWaitTime(waitTime)
+						.setIndex(currentIndex).build(),
+				QueryParams.DEFAULT, query);
+	}
+
+	private Response<List<GetValue>> readValues(String path) {
+		return StaleReads.read(this.properties.getMaxStaleness(),
+				params -> this.consul.getKVValues(path, getAclToken(), params));
+	}
+
+	/**
+	 * Handles the values read for a context, publishing a refresh if its index moved.
+	 * @param context the context
+	 * @param currentIndex the index last seen for the context, -1 if none was seen
+	 * @param response the values read for the context
+	 * @param detectedAt the time in nanos the values were received
+	 */
+	private void handleContextResponse(String context, Long currentIndex, Response<List<GetValue>> response,
+			long detectedAt) {
+		// if response.value == null, response was a 404, otherwise it was a
+		// 200, reducing churn if there wasn't anything
+		if (response.getValue() != null && !response.getValue().isEmpty()) {
+			Long newIndex = response.getConsulIndex();
+
+			if (newIndex != null && !newIndex.equals(currentIndex)) {
+				this.metrics.indexChanged(context, newIndex);
+				Map<String, GetValue> values = toValueMap(response.getValue(), context);
+				boolean publish;
+				Map<String, GetValue> previousValues;
+				synchronized (this.consulIndexes) {
+					// don't publish the same index again (unless every context is
+					// updated on its own), don't publish the first time (-1) so index
+					// can be primed
+					publish = (this.properties.getWatch().isUpdateInPlace()
+							|| !this.consulIndexes.containsValue(newIndex)) && !currentIndex.equals(-1L);
+					this.consulIndexes.put(context, newIndex);
+					previousValues = this.lastValues.put(context, values);
+				}
+				if (publish) {
+					if (log.isTraceEnabled()) {
+						log.trace("Context " + context + " has new index " + newIndex);
+					}
+					RefreshEventData data = createRefreshEventData(context, currentIndex, newIndex,
+							previousValues, values);
+					if (data.isUnchanged()) {
+						if (log.isTraceEnabled()) {
+							log.trace("Values of context " + context + " did not change with index " + newIndex);
+						}
+					}
+					else {
+						publish(data, values.values(), detectedAt);
+					}
+				}
+				else if (log.isTraceEnabled()) {
+					log.trace("Event for index already published for context " + context);
 				}
+			}
+			else if (log.isTraceEnabled()) {
+				log.trace("Same index for context " + context);
+			}
+		}
+		else if (log.isTraceEnabled()) {
+			log.trace("No value for context " + context);
+		}
+	}
+
+	/**
+	 * Watches the sentinel key of a context with a blocking query and only reads the
+	 * context once the sentinel was written.
+	 * @param context the context to watch
+	 * @param firstTime if this is the first query for the context
+	 */
+	private void watchSentinel(String context, boolean firstTime) {
+		String normalized = normalize(context);
+		WatchBackoff backoff = getBackoff(normalized);
+		if (backoff.isBackingOff()) {
+			if (log.isTraceEnabled()) {
+				log.trace("Backing off from watching context " + normalized + ": " + backoff);
+			}
+			return;
+		}
+
+		try {
+			SentinelWatch sentinel = this.sentinelWatches.computeIfAbsent(normalized,
+					key -> new SentinelWatch(getSentinelKey(key)));
+			Long currentIndex;
+			synchronized (this.consulIndexes) {
+				currentIndex = this.consulIndexes.get(normalized);
+			}
+			if (currentIndex == null) {
+				currentIndex = -1L;
+			}
+
+			if (log.isTraceEnabled()) {
+				log.trace("watching consul for sentinel '" + sentinel.key + "' with index " + sentinel.index);
+			}
+
+			long start = System.nanoTime();
+			Response<GetValue> response = blockingQuery(sentinel.index,
+					params -> this.consul.getKVValue(sentinel.key, getAclToken(), params));
+			long detectedAt = System.nanoTime();
+			backoff.succeeded();
+			Long newIndex = response.getConsulIndex();
+			this.metrics.queryCompleted(normalized, detectedAt - start,
+					newIndex != null && newIndex != sentinel.index);
+			if (newIndex != null) {
+				sentinel.index = newIndex;
+			}
 
+			// a missing key is only woken up by other writes, so compare the sentinel's
+			// own index rather than the index of the response
+			long modifyIndex = (response.getValue() != null) ? response.getValue().getModifyIndex() : -1L;
+			Long previousModifyIndex = sentinel.modifyIndex;
+			sentinel.modifyIndex = modifyIndex;
+			boolean changed;
+			if (previousModifyIndex != null) {
+				changed = modifyIndex != previousModifyIndex;
+			}
+			else {
+				// on the first query, check if it was written since the context was read
+				changed = modifyIndex > currentIndex;
+			}
+			if (!changed) {
 				if (log.isTraceEnabled()) {
-					log.trace("watching consul for context '" + context + "' with index " + currentIndex);
+					log.trace("Same sentinel for context " + normalized);
 				}
+				return;
+			}
 
-				// use the consul ACL token if found
-				String aclToken = this.properties.getAclToken();
-				if (StringUtils.isEmpty(aclToken)) {
-					aclToken = null;
+			Response<List<GetValue>> values = readValues(normalized);
+			handleContextResponse(normalized, currentIndex, values, detectedAt);
+		}
+		catch (Exception e) {
+			this.metrics.queryFailed(normalized);
+			handleWatchException(e, "context '" + normalized + "'", firstTime, backoff);
+		}
+	}
+
+	/**
+	 * @param context a normalized context
+	 * @return the sentinel key of the context, relative to the context or, with the FILES
+	 * format, to the folder of the file
+	 */
+	private String getSentinelKey(String context) {
+		String folder = (this.properties.getFormat() == FILES) ? context.substring(0, context.lastIndexOf('/') + 1)
+				: context;
+		return folder + this.properties.getWatch().getSentinelKey();
+	}
+
+	/**
+	 * Watches every context below a common prefix with a single recursive blocking
+	 * query and maps the returned keys back to the contexts locally.
+	 * @param prefixWatch the prefix to watch
+	 * @param firstTime if this is the first query for the prefix
+	 */
+	private void watchPrefix(PrefixWatch prefixWatch, boolean firstTime) {
+		WatchBackoff backoff = getBackoff(prefixWatch.prefix);
+		if (backoff.isBackingOff()) {
+			if (log.isTraceEnabled()) {
+				log.trace("Backing off from watching prefix " + prefixWatch.prefix + ": " + backoff);
+			}
+			return;
+		}
+
+		try {
+			long currentIndex = prefixWatch.index;
+
+			if (log.isTraceEnabled()) {
+				log.trace("watching consul for prefix '" + prefixWatch.prefix + "' with index " + currentIndex);
+			}
+
+			long start = System.nanoTime();
+			Response<List<GetValue>> response = blockingRead(prefixWatch.prefix, currentIndex);
+			long detectedAt = System.nanoTime();
+			backoff.succeeded();
+
+			Long newIndex = response.getConsulIndex();
+			this.metrics.queryCompleted(prefixWatch.prefix, detectedAt - start,
+					newIndex != null && !newIndex.equals(currentIndex));
+			if (newIndex == null || newIndex.equals(currentIndex)) {
+				if (log.isTraceEnabled()) {
+					log.trace("Same index for prefix " + prefixWatch.prefix);
 				}
+				return;
+			}
+			prefixWatch.index = newIndex;
 
-				Response<List<GetValue>> response = this.consul.getKVValues(context, aclToken,
-						new QueryParams(this.properties.getWatch().getWaitTime(), currentIndex));
-
-				// if response.value == null, response was a 404, otherwise it was a
-				// 200, reducing churn if there wasn't anything
-				if (response.getValue() != null && !response.getValue().isEmpty()) {
-					Long newIndex = response.getConsulIndex();
-
-					if (newIndex != null && !newIndex.equals(currentIndex)) {
-						// don't publish the same index again, don't publish the first
-						// time (-1) so index can be primed
-						if (!this.consulIndexes.containsValue(newIndex) && !currentIndex.equals(-1L)) {
-							if (log.isTraceEnabled()) {
-								log.trace("Context " + context + " has new index " + newIndex);
-							}
-							RefreshEventData data = new RefreshEventData(context, currentIndex, newIndex);
-							this.publisher.publishEvent(new RefreshEvent(this, data, data.toString()));
-						}
-						else if (log.isTraceEnabled()) {
-							log.trace("Event for index already published for context " + context);
-						}
-						this.consulIndexes.put(context, newIndex);
+			List<GetValue> values = response.getValue() != null ? response.getValue() : Collections.emptyList();
+			for (String context : prefixWatch.contexts) {
+				Map<String, GetValue> contextValues = toValueMap(values, context);
+				long modifyIndex = -1L;
+				for (GetValue value : contextValues.values()) {
+					modifyIndex = Math.max(modifyIndex, value.getModifyIndex());
+				}
+				Long prevIndex;
+				Long contextIndex = null;
+				Map<String, GetValue> previousValues;
+				synchronized (this.consulIndexes) {
+					prevIndex = this.consulIndexes.get(context);
+					if (prevIndex == null) {
+						prevIndex = -1L;
 					}
-					else if (log.isTraceEnabled()) {
-						log.trace("Same index for context " + context);
+					previousValues = this.lastValues.put(context, contextValues);
+					// a write raises the highest ModifyIndex of the context, a delete
+					// only shows up as a missing key
+					if (modifyIndex > prevIndex) {
+						contextIndex = modifyIndex;
+					}
+					else if (previousValues != null && !previousValues.keySet().equals(contextValues.keySet())) {
+						contextIndex = newIndex;
+					}
+					if (contextIndex != null) {
+						this.consulIndexes.put(context, contextIndex);
 					}
 				}
-				else if (log.isTraceEnabled()) {
-					log.trace("No value for context " + context);
+				if (contextIndex != null) {
+					this.metrics.indexChanged(context, contextIndex);
 				}
+				// don't publish the first time (-1) so index can be primed
+				if (contextIndex != null && !prevIndex.equals(-1L)) {
+					if (log.isTraceEnabled()) {
+						log.trace("Context " + context + " has new index " + contextIndex);
+					}
+					RefreshEventData data = createRefreshEventData(context, prevIndex, contextIndex, previousValues,
+							contextValues);
+					if (!data.isUnchanged()) {
+						publish(data, contextValues.values(), detectedAt);
+					}
+					else if (log.isTraceEnabled()) {
+						log.trace("Values of context " + context + " did not change with index " + contextIndex);
+					}
+				}
+			}
+		}
+		catch (Exception e) {
+			this.metrics.queryFailed(prefixWatch.prefix);
+			handleWatchException(e, "prefix '" + prefixWatch.prefix + "'", firstTime, backoff);
+		}
+	}
 
+	private void publish(RefreshEventData data, Collection<GetValue> values, long detectedAt) {
+		if (!this.running.get()) {
+			if (log.isTraceEnabled()) {
+				log.trace("Not publishing change of context " + data.getContext() + ", the watch is stopped");
 			}
-			catch (Exception e) {
-				// only fail fast on the initial query, otherwise just log the error
-				if (this.firstTime && this.properties.isFailFast()) {
-					log.error("Fail fast is set and there was an error reading configuration from consul.");
-					ReflectionUtils.rethrowRuntimeException(e);
-				}
-				else if (log.isTraceEnabled()) {
-					log.trace("Error querying consul Key/Values for context '" + context + "'", e);
+			return;
+		}
+		ContextChange change = new ContextChange(data, values, detectedAt);
+		RefreshCoalescer<ContextChange> refreshCoalescer = this.refreshCoalescer;
+		if (refreshCoalescer != null) {
+			refreshCoalescer.add(change);
+		}
+		else {
+			dispatchChanges(Collections.singletonList(change));
+		}
+	}
+
+	private void dispatchChanges(List<ContextChange> changes) {
+		RefreshDispatcher<String, ContextChange> refreshDispatcher = this.refreshDispatcher;
+		if (refreshDispatcher != null) {
+			refreshDispatcher.dispatch(changes);
+		}
+		else {
+			publishChanges(changes);
+		}
+	}
+
+	/**
+	 * Publishes the pending changes right away instead of waiting for the quiet period.
+	 */
+	void flushRefresh() {
+		RefreshCoalescer<ContextChange> refreshCoalescer = this.refreshCoalescer;
+		if (refreshCoalescer != null) {
+			refreshCoalescer.flush();
+		}
+	}
+
+	/**
+	 * Publishes a single refresh for the given changes, combining changes of the same
+	 * context and the changed keys of all contexts.
+	 * @param changes the changes, in the order they were detected
+	 */
+	private void publishChanges(List<ContextChange> changes) {
+		Map<String, RefreshEventData> dataByContext = new LinkedHashMap<>();
+		Map<String, Collection<GetValue>> valuesByContext = new HashMap<>();
+		Map<String, Long> detectedAtByContext = new HashMap<>();
+		for (ContextChange change : changes) {
+			dataByContext.merge(change.data.getContext(), change.data, RefreshEventData::merge);
+			valuesByContext.put(change.data.getContext(), change.values);
+			detectedAtByContext.merge(change.data.getContext(), change.detectedAt, Math::min);
+		}
+
+		Map<String, InPlaceTarget> targets = findInPlaceTargets(dataByContext.keySet());
+		Set<String> changedKeys = new LinkedHashSet<>();
+		if (targets == null) {
+			// a full refresh diffs the environment, so no context of the batch may be
+			// updated in place before it or its keys would be missing from the diff
+			RefreshEventData refreshData = null;
+			for (RefreshEventData data : dataByContext.values()) {
+				refreshData = refreshData != null ? refreshData.merge(data) : data;
+			}
+			this.publisher.publishEvent(new RefreshEvent(this, refreshData, refreshData.toString()));
+		}
+		else {
+			targets.forEach((context, target) -> changedKeys
+					.addAll(updateInPlace(context, target, valuesByContext.get(context))));
+			if (changedKeys.isEmpty()) {
+				return;
+			}
+			this.publisher.publishEvent(new EnvironmentChangeEvent(this.applicationContext, changedKeys));
+			this.applicationContext.getBeanProvider(RefreshScope.class).ifAvailable(RefreshScope::refreshAll);
+		}
+		long publishedAt = System.nanoTime();
+		detectedAtByContext.forEach(
+				(context, detectedAt) -> this.metrics.refreshPublished(context, publishedAt - detectedAt));
+	}
+
+	/**
+	 * Finds the property sources of the environment loaded from the given contexts.
+	 * @param contexts the changed contexts
+	 * @return the property sources by context, or null if the contexts can't all be
+	 * updated in place, in which case a full refresh is needed
+	 */
+	private Map<String, InPlaceTarget> findInPlaceTargets(Collection<String> contexts) {
+		if (!this.properties.getWatch().isUpdateInPlace() || this.applicationContext == null
+				|| !(this.applicationContext.getEnvironment() instanceof ConfigurableEnvironment)) {
+			return null;
+		}
+		ConfigurableEnvironment environment = (ConfigurableEnvironment) this.applicationContext.getEnvironment();
+		Map<String, InPlaceTarget> targets = new LinkedHashMap<>();
+		for (String context : contexts) {
+			InPlaceTarget target = new InPlaceTarget();
+			for (PropertySource<?> propertySource : environment.getPropertySources()) {
+				findPropertySources(propertySource, context, target.propertySources, target.composites);
+			}
+			if (target.propertySources.isEmpty()) {
+				return null;
+			}
+			targets.put(context, target);
+		}
+		return targets;
+	}
+
+	/**
+	 * Applies the values of a context to the property sources of the environment that
+	 * were loaded from it.
+	 * @param context the changed context
+	 * @param target the property sources loaded from the context
+	 * @param values the current values of the context
+	 * @return the names of the changed properties
+	 */
+	private Set<String> updateInPlace(String context, InPlaceTarget target, Collection<GetValue> values) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (ConsulPropertySource propertySource : target.propertySources) {
+			keys.addAll(propertySource.update(new ArrayList<>(values)));
+		}
+		if (!keys.isEmpty()) {
+			target.composites.forEach(ConsulCompositePropertySource::rebuild);
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Updated context " + context + " in place, changed keys " + keys);
+		}
+		return keys;
+	}
+
+	private void findPropertySources(PropertySource<?> propertySource, String context,
+			List<ConsulPropertySource> found, List<ConsulCompositePropertySource> composites) {
+		if (propertySource instanceof ConsulPropertySource) {
+			if (normalize(propertySource.getName()).equals(context)) {
+				found.add((ConsulPropertySource) propertySource);
+			}
+		}
+		else if (propertySource instanceof BootstrapPropertySource) {
+			findPropertySources(((BootstrapPropertySource<?>) propertySource).getDelegate(), context, found,
+					composites);
+		}
+		else if (propertySource instanceof CompositePropertySource) {
+			if (propertySource instanceof ConsulCompositePropertySource) {
+				// merged indexes are rebuilt once their children are updated
+				composites.add((ConsulCompositePropertySource) propertySource);
+			}
+			for (PropertySource<?> child : ((CompositePropertySource) propertySource).getPropertySources()) {
+				findPropertySources(child, context, found, composites);
+			}
+		}
+	}
+
+	private Map<String, GetValue> toValueMap(List<GetValue> values, String context) {
+		Map<String, GetValue> valueMap = new LinkedHashMap<>();
+		for (GetValue value : values) {
+			if (belongsToContext(value.getKey(), context)) {
+				valueMap.put(value.getKey(), value);
+			}
+		}
+		return valueMap;
+	}
+
+	/**
+	 * Compares the values last seen for a context with the current ones. Keys are only
+	 * known when values were seen before, otherwise the whole context is considered
+	 * changed. A key only counts as changed when both its ModifyIndex and its value
+	 * changed, so rewrites of the same value or lock and session churn are ignored.
+	 */
+	private RefreshEventData createRefreshEventData(String context, Long prevIndex, Long newIndex,
+			Map<String, GetValue> previousValues, Map<String, GetValue> values) {
+		if (previousValues == null) {
+			return new RefreshEventData(context, prevIndex, newIndex);
+		}
+		Set<String> addedKeys = new TreeSet<>();
+		Set<String> changedKeys = new TreeSet<>();
+		for (GetValue value : values.values()) {
+			GetValue previousValue = previousValues.get(value.getKey());
+			if (previousValue == null) {
+				addedKeys.add(value.getKey());
+			}
+			else if (previousValue.getModifyIndex() != value.getModifyIndex()
+					&& !Objects.equals(previousValue.getValue(), value.getValue())) {
+				changedKeys.add(value.getKey());
+			}
+		}
+		Set<String> removedKeys = new TreeSet<>(previousValues.keySet());
+		removedKeys.removeAll(values.keySet());
+		return new RefreshEventData(context, prevIndex, newIndex, addedKeys, changedKeys, removedKeys);
+	}
+
+	/**
+	 * @param key a Consul key
+	 * @param context a watched context
+	 * @return true if the key belongs to the context and its value ends up in the
+	 * properties of the context, e.g. only the data key for YAML and PROPERTIES
+	 */
+	private boolean belongsToContext(String key, String context) {
+		return ConsulPropertySources.belongsToContext(key, context, this.properties);
+	}
+
+	private void handleWatchException(Exception e, String description, boolean firstTime, WatchBackoff backoff) {
+		// only fail fast on the initial query, otherwise just log the error
+		if (firstTime && this.properties.isFailFast()) {
+			log.error("Fail fast is set and there was an error reading configuration from consul.");
+			ReflectionUtils.rethrowRuntimeException(e);
+		}
+		long interval = backoff.failed();
+		if (log.isTraceEnabled()) {
+			log.trace("Error querying consul Key/Values for " + description + ", backing off for " + interval + "ms",
+					e);
+		}
+		else if (log.isWarnEnabled()) {
+			// simplified one line log message in the event of an agent
+			// failure
+			log.warn("Error querying consul Key/Values for " + description + ", backing off for " + interval
+					+ "ms. Message: " + e.getMessage());
+		}
+	}
+
+	private WatchBackoff getBackoff(String key) {
+		return this.backoffs.computeIfAbsent(key, k -> new WatchBackoff(this.properties.getWatch().getBackoff()));
+	}
+
+	/**
+	 * @return the backoff state of every watched context, or of every watched prefix
+	 * with the prefix watch strategy
+	 */
+	public Map<String, WatchBackoff> getBackoffs() {
+		return Collections.unmodifiableMap(this.backoffs);
+	}
+
+	private String getAclToken() {
+		// use the consul ACL token if found
+		String aclToken = this.properties.getAclToken();
+		if (StringUtils.isEmpty(aclToken)) {
+			return null;
+		}
+		return aclToken;
+	}
+
+	private String normalize(String context) {
+		// turn the context into a Consul folder path (unless our config format
+		// are FILES)
+		if (this.properties.getFormat() != FILES && !context.endsWith("/")) {
+			return context + "/";
+		}
+		return context;
+	}
+
+	private List<PrefixWatch> getPrefixWatches() {
+		synchronized (this.consulIndexes) {
+			if (this.prefixWatches == null) {
+				this.prefixWatches = createPrefixWatches();
+			}
+			return this.prefixWatches;
+		}
+	}
+
+	/**
+	 * Groups the contexts by the configured prefix they live under and computes the
+	 * common folder of each group. Contexts outside of every configured prefix are
+	 * watched on their own.
+	 * @return the prefixes to watch
+	 */
+	private List<PrefixWatch> createPrefixWatches() {
+		Map<String, List<String>> groups = new LinkedHashMap<>();
+		for (String context : this.consulIndexes.keySet()) {
+			String normalized = normalize(context);
+			String group = null;
+			for (String prefix : this.properties.getPrefixes()) {
+				if (StringUtils.hasText(prefix) && normalized.startsWith(prefix + "/")
+						&& (group == null || prefix.length() > group.length())) {
+					group = prefix;
 				}
-				else if (log.isWarnEnabled()) {
-					// simplified one line log message in the event of an agent
-					// failure
-					log.warn("Error querying consul Key/Values for context '" + context + "'. Message: "
-							+ e.getMessage());
+			}
+			groups.computeIfAbsent(group != null ? group : normalized, key -> new ArrayList<>()).add(normalized);
+		}
+		List<PrefixWatch> watches = new ArrayList<>();
+		for (List<String> contexts : groups.values()) {
+			long index = -1L;
+			for (String context : contexts) {
+				Long contextIndex = this.consulIndexes.get(context);
+				if (contextIndex != null && contextIndex > index) {
+					index = contextIndex;
 				}
 			}
+			watches.add(new PrefixWatch(getCommonFolder(contexts), contexts, index));
 		}
-		this.firstTime = false;
+		return watches;
+	}
+
+	static String getCommonFolder(List<String> contexts) {
+		String common = contexts.get(0);
+		for (String context : contexts) {
+			int i = 0;
+			while (i < common.length() && i < context.length() && common.charAt(i) == context.charAt(i)) {
+				i++;
+			}
+			common = common.substring(0, i);
+		}
+		return common.substring(0, common.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * A single blocking query scheduled on its own when the watch is concurrent.
+	 */
+	private class WatchTask implements Runnable {
+
+		private final Consumer<Boolean> watch;
+
+		private boolean firstTime = true;
+
+		WatchTask(Consumer<Boolean> watch) {
+			this.watch = watch;
+		}
+
+		@Override
+		public void run() {
+			if (!ConfigWatch.this.running.get()) {
+				return;
+			}
+			this.watch.accept(this.firstTime);
+			this.firstTime = false;
+		}
+
+	}
+
+	/**
+	 * The property sources of the environment loaded from a context.
+	 */
+	private static class InPlaceTarget {
+
+		private final List<ConsulPropertySource> propertySources = new ArrayList<>();
+
+		private final List<ConsulCompositePropertySource> composites = new ArrayList<>();
+
+	}
+
+	/**
+	 * A detected change of a context together with its current values and the time in
+	 * nanos the new index was received.
+	 */
+	private static class ContextChange {
+
+		private final RefreshEventData data;
+
+		private final Collection<GetValue> values;
+
+		private final long detectedAt;
+
+		ContextChange(RefreshEventData data, Collection<GetValue> values, long detectedAt) {
+			this.data = data;
+			this.values = values;
+			this.detectedAt = detectedAt;
+		}
+
+		/**
+		 * Combines this change with a later change of the same context.
+		 * @param later the later change
+		 * @return the combined change, with the current values of the later one
+		 */
+		ContextChange merge(ContextChange later) {
+			return new ContextChange(this.data.merge(later.data), later.values,
+					Math.min(this.detectedAt, later.detectedAt));
+		}
+
+	}
+
+	/**
+	 * A recursive watch on a folder shared by several contexts.
+	 */
+	private static class PrefixWatch {
+
+		private final String prefix;
+
+		private final List<String> contexts;
+
+		private volatile long index;
+
+		PrefixWatch(String prefix, List<String> contexts, long index) {
+			this.prefix = prefix;
+			this.contexts = contexts;
+			this.index = index;
+		}
+
+	}
+
+	/**
+	 * A blocking query on the sentinel key of a context.
+	 */
+	private static class SentinelWatch {
+
+		private final String key;
+
+		private volatile long index = -1L;
+
+		/**
+		 * The ModifyIndex of the sentinel, -1 if it is missing, or null before the first
+		 * query.
+		 */
+		private volatile Long modifyIndex;
+
+		SentinelWatch(String key) {
+			this.key = key;
+		}
+
 	}
 
 	public static class RefreshEventData {
 
 		private final String context;
 
+		private final Set<String> contexts;
+
 		private final Long prevIndex;
 
 		private final Long newIndex;
 
+		private final Set<String> addedKeys;
+
+		private final Set<String> changedKeys;
+
+		private final Set<String> removedKeys;
+
 		RefreshEventData(String context, Long prevIndex, Long newIndex) {
+			this(context, prevIndex, newIndex, null, null, null);
+		}
+
+		RefreshEventData(String context, Long prevIndex, Long newIndex, Set<String> addedKeys,
+				Set<String> changedKeys, Set<String> removedKeys) {
+			this(context, Collections.singleton(context), prevIndex, newIndex, addedKeys, changedKeys, removedKeys);
+		}
+
+		private RefreshEventData(String context, Set<String> contexts, Long prevIndex, Long newIndex,
+				Set<String> addedKeys, Set<String> changedKeys, Set<String> removedKeys) {
 			this.context = context;
+			this.contexts = Collections.unmodifiableSet(contexts);
 			this.prevIndex = prevIndex;
 			this.newIndex = newIndex;
+			this.addedKeys = addedKeys != null ? Collections.unmodifiableSet(addedKeys) : null;
+			this.changedKeys = changedKeys != null ? Collections.unmodifiableSet(changedKeys) : null;
+			this.removedKeys = removedKeys != null ? Collections.unmodifiableSet(removedKeys) : null;
 		}
 
+		/**
+		 * @return the changed context, or the first of them when several changes were
+		 * combined
+		 */
 		public String getContext() {
 			return this.context;
 		}
 
+		/**
+		 * @return all contexts covered by this event
+		 */
+		public Set<String> getContexts() {
+			return this.contexts;
+		}
+
 		public Long getPrevIndex() {
 			return this.prevIndex;
 		}
@@ -232,6 +1092,71 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 			return this.newIndex;
 		}
 
+		/**
+		 * @return the Consul keys added to the context, or {@code null} if the previous
+		 * values of the context are unknown and the whole context has to be considered
+		 * changed
+		 */
+		public Set<String> getAddedKeys() {
+			return this.addedKeys;
+		}
+
+		/**
+		 * @return the Consul keys of the context that were written, or {@code null} if
+		 * the previous values of the context are unknown
+		 */
+		public Set<String> getChangedKeys() {
+			return this.changedKeys;
+		}
+
+		/**
+		 * @return the Consul keys removed from the context, or {@code null} if the
+		 * previous values of the context are unknown
+		 */
+		public Set<String> getRemovedKeys() {
+			return this.removedKeys;
+		}
+
+		/**
+		 * @return true if the keys of the context are known and none of them was added,
+		 * changed or removed
+		 */
+		boolean isUnchanged() {
+			return this.addedKeys != null && this.addedKeys.isEmpty() && this.changedKeys.isEmpty()
+					&& this.removedKeys.isEmpty();
+		}
+
+		/**
+		 * Combines this change with a later one. The result covers the contexts and the
+		 * keys of both changes, from the earliest previous index to the latest new index.
+		 * @param later the later change
+		 * @return the combined change
+		 */
+		RefreshEventData merge(RefreshEventData later) {
+			Set<String> contexts = new LinkedHashSet<>(this.contexts);
+			contexts.addAll(later.contexts);
+			Long prevIndex = this.prevIndex;
+			if (prevIndex == null || (later.prevIndex != null && later.prevIndex < prevIndex)) {
+				prevIndex = later.prevIndex;
+			}
+			Long newIndex = this.newIndex;
+			if (newIndex == null || (later.newIndex != null && later.newIndex > newIndex)) {
+				newIndex = later.newIndex;
+			}
+			return new RefreshEventData(this.context, contexts, prevIndex, newIndex,
+					union(this.addedKeys, later.addedKeys), union(this.changedKeys, later.changedKeys),
+					union(this.removedKeys, later.removedKeys));
+		}
+
+		private static Set<String> union(Set<String> keys, Set<String> otherKeys) {
+			if (keys == null || otherKeys == null) {
+				return null;
+			}
+			Set<String> union = new TreeSet<>(keys);
+			union.addAll(otherKeys);
+			return union;
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) {
@@ -241,19 +1166,25 @@ public class ConfigWatch implements ApplicationEventPublisherAware, SmartLifecyc
 				return false;
 			}
 			RefreshEventData that = (RefreshEventData) o;
-			return Objects.equals(this.context, that.context) && Objects.equals(this.prevIndex, that.prevIndex)
-					&& Objects.equals(this.newIndex, that.newIndex);
+			return Objects.equals(this.context, that.context) && Objects.equals(this.contexts, that.contexts)
+					&& Objects.equals(this.prevIndex, that.prevIndex) && Objects.equals(this.newIndex, that.newIndex)
+					&& Objects.equals(this.addedKeys, that.addedKeys)
+					&& Objects.equals(this.changedKeys, that.changedKeys)
+					&& Objects.equals(this.removedKeys, that.removedKeys);
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(this.context, this.prevIndex, this.newIndex);
+			return Objects.hash(this.context, this.contexts, this.prevIndex, this.newIndex, this.addedKeys,
+					this.changedKeys, this.removedKeys);
 		}
 
 		@Override
 		public String toString() {
-			return new ToStringCreator(this).append("context", this.context).append("prevIndex", this.prevIndex)
-					.append("newIndex", this.newIndex).toString();
+			return new ToStringCreator(this).append("context", this.context).append("contexts", this.contexts)
+					.append("prevIndex", this.prevIndex).append("newIndex", this.newIndex)
+					.append("addedKeys", this.addedKeys).append("changedKeys", this.changedKeys)
+					.append("removedKeys", this.removedKeys).toString();
 		}
 
 	}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+/**
+ * Receives measurements of the {@link ConfigWatch}. The watch key is the watched context,
+ * or the watched prefix with the prefix watch strategy. Refreshes are always reported
+ * per context.
+ */
+public interface ConfigWatchMetrics {
+
+	/**
+	 * Metrics that discard every measurement.
+	 */
+	ConfigWatchMetrics NONE = new ConfigWatchMetrics() {
+	};
+
+	/**
+	 * Called for every watched context when the watch starts.
+	 * @param context the context
+	 */
+	default void watchStarted(String context) {
+	}
+
+	/**
+	 * Called when a blocking query returned.
+	 * @param watch the watched context or prefix
+	 * @param durationNanos the duration of the query
+	 * @param indexChanged false if the query timed out without a new index
+	 */
+	default void queryCompleted(String watch, long durationNanos, boolean indexChanged) {
+	}
+
+	/**
+	 * Called when a blocking query failed.
+	 * @param watch the watched context or prefix
+	 */
+	default void queryFailed(String watch) {
+	}
+
+	/**
+	 * Called when the index of a context changed.
+	 * @param context the context
+	 * @param index the new index
+	 */
+	default void indexChanged(String context, long index) {
+	}
+
+	/**
+	 * Called when a refresh was published for a changed context.
+	 * @param context the context
+	 * @param latencyNanos the time from the detection of the new index to the refresh
+	 */
+	default void refreshPublished(String context, long latencyNanos) {
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.origin.Origin;
+import org.springframework.boot.origin.OriginLookup;
+import org.springframework.boot.origin.PropertySourceOrigin;
+import org.springframework.core.env.CompositePropertySource;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+
+/**
+ * A {@link CompositePropertySource} that merges the properties of its children into a
+ * single index, resolving their precedence once instead of on every lookup. The index is
+ * built on the first read and rebuilt after {@link #rebuild()}, for example once a child
+ * was updated in place. The child providing a property is kept as its origin. Once
+ * added at bootstrap the source is wrapped in a
+ * {@link org.springframework.cloud.bootstrap.config.BootstrapPropertySource}, which does
+ * not expose origins, so they are only seen when reading this source directly.
+ */
+public class ConsulCompositePropertySource extends CompositePropertySource implements OriginLookup<String> {
+
+	private final Object monitor = new Object();
+
+	private volatile MergedProperties merged;
+
+	/**
+	 * The last merged index, its names array is kept while the names don't change.
+	 */
+	private PropertiesSnapshot lastSnapshot;
+
+	public ConsulCompositePropertySource(String name) {
+		super(name);
+	}
+
+	@Override
+	public void addPropertySource(PropertySource<?> propertySource) {
+		super.addPropertySource(propertySource);
+		rebuild();
+	}
+
+	@Override
+	public void addFirstPropertySource(PropertySource<?> propertySource) {
+		super.addFirstPropertySource(propertySource);
+		rebuild();
+	}
+
+	/**
+	 * Discards the merged index, the next read merges the children again.
+	 */
+	public void rebuild() {
+		synchronized (this.monitor) {
+			this.merged = null;
+		}
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		PropertiesSnapshot snapshot = getMerged().snapshot;
+		return (snapshot != null) ? snapshot.get(name) : super.getProperty(name);
+	}
+
+	@Override
+	public boolean containsProperty(String name) {
+		PropertiesSnapshot snapshot = getMerged().snapshot;
+		return (snapshot != null) ? snapshot.contains(name) : super.containsProperty(name);
+	}
+
+	@Override
+	public String[] getPropertyNames() {
+		PropertiesSnapshot snapshot = getMerged().snapshot;
+		return (snapshot != null) ? snapshot.getNames() : super.getPropertyNames();
+	}
+
+	@Override
+	public Origin getOrigin(String name) {
+		PropertySource<?> propertySource = getMerged().origins.get(name);
+		return (propertySource != null) ? new PropertySourceOrigin(propertySource, name) : null;
+	}
+
+	private MergedProperties getMerged() {
+		MergedProperties merged = this.merged;
+		if (merged == null) {
+			synchronized (this.monitor) {
+				if (this.merged == null) {
+					this.merged = merge();
+				}
+				merged = this.merged;
+			}
+		}
+		return merged;
+	}
+
+	private MergedProperties merge() {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		Map<String, PropertySource<?>> origins = new HashMap<>();
+		for (PropertySource<?> propertySource : getPropertySources()) {
+			if (!(propertySource instanceof EnumerablePropertySource)) {
+				return MergedProperties.NOT_MERGED;
+			}
+			for (String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+				// like CompositePropertySource, the first child with a value wins
+				if (properties.get(name) == null) {
+					Object value = propertySource.getProperty(name);
+					if (value != null || !properties.containsKey(name)) {
+						properties.put(name, value);
+						origins.put(name, propertySource);
+					}
+				}
+			}
+		}
+		this.lastSnapshot = new PropertiesSnapshot(properties, this.lastSnapshot);
+		return new MergedProperties(this.lastSnapshot, origins);
+	}
+
+	private static final class MergedProperties {
+
+		/**
+		 * Used if a child can't be enumerated, reads then go to the children.
+		 */
+		private static final MergedProperties NOT_MERGED = new MergedProperties(null, Collections.emptyMap());
+
+		private final PropertiesSnapshot snapshot;
+
+		private final Map<String, PropertySource<?>> origins;
+
+		private MergedProperties(PropertiesSnapshot snapshot, Map<String, PropertySource<?>> origins) {
+			this.snapshot = snapshot;
+			this.origins = origins;
+		}
+
+	}
+
+}
@@ -17,18 +17,22 @@
 package org.springframework.cloud.consul.config;
 
 import com.ecwid.consul.v1.ConsulClient;
+import io.micrometer.core.instrument.MeterRegistry;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.consul.ConditionalOnConsulEnabled;
+import org.springframework.cloud.consul.WatchThreads;
 import org.springframework.cloud.endpoint.RefreshEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Spencer Gibb
@@ -37,6 +41,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 @ConditionalOnConsulEnabled
 @ConditionalOnProperty(name = "spring.cloud.consul.config.enabled", matchIfMissing = true)
 @EnableConfigurationProperties
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 public class ConsulConfigAutoConfiguration {
 
 	/**
@@ -52,13 +57,32 @@ public class ConsulConfigAutoConfiguration {
 		@Bean
 		@ConditionalOnBean(ConsulConfigIndexes.class)
 		public ConfigWatch configWatch(ConsulConfigProperties properties, ConsulConfigIndexes indexes,
-				ConsulClient consul, @Qualifier(CONFIG_WATCH_TASK_SCHEDULER_NAME) TaskScheduler taskScheduler) {
-			return new ConfigWatch(properties, consul, indexes.getIndexes(), taskScheduler);
+				ConsulClient consul, @Qualifier(CONFIG_WATCH_TASK_SCHEDULER_NAME) TaskScheduler taskScheduler,
+				ObjectProvider<ConfigWatchMetrics> metrics) {
+			ConfigWatch watch = new ConfigWatch(properties, consul, indexes.getIndexes(), indexes.getValues(),
+					taskScheduler);
+			metrics.ifAvailable(watch::setMetrics);
+			return watch;
 		}
 
 		@Bean(name = CONFIG_WATCH_TASK_SCHEDULER_NAME)
-		public TaskScheduler configWatchTaskScheduler() {
-			return new ThreadPoolTaskScheduler();
+		public TaskScheduler configWatchTaskScheduler(ConsulConfigProperties properties) {
+			// a concurrent watch keeps one blocking query in flight per context
+			return WatchThreads.newTaskScheduler(ConfigWatch.CONFIG_WATCH_THREAD_NAME_PREFIX,
+					properties.getWatch().getConcurrency());
+		}
+
+		@Configuration(proxyBeanMethods = false)
+		@ConditionalOnClass(MeterRegistry.class)
+		@ConditionalOnBean(MeterRegistry.class)
+		protected static class ConfigWatchMetricsConfiguration {
+
+			@Bean
+			@ConditionalOnMissingBean
+			public ConfigWatchMetrics configWatchMetrics(MeterRegistry meterRegistry) {
+				return new MicrometerConfigWatchMetrics(meterRegistry);
+			}
+
 		}
 
 	}
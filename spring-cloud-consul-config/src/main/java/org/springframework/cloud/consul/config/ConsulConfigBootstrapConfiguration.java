@@ -17,7 +17,9 @@
 package org.springframework.cloud.consul.config;
 
 import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.ConsulRawClient;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -58,8 +60,14 @@ public class ConsulConfigBootstrapConfiguration {
 		}
 
 		@Bean
-		public ConsulPropertySourceLocator consulPropertySourceLocator(ConsulConfigProperties consulConfigProperties) {
-			return new ConsulPropertySourceLocator(this.consul, consulConfigProperties);
+		public ConsulPropertySourceLocator consulPropertySourceLocator(ConsulConfigProperties consulConfigProperties,
+				ObjectProvider<ConsulRawClient> consulRawClient) {
+			ConsulPropertySourceLocator locator = new ConsulPropertySourceLocator(this.consul, consulConfigProperties);
+			if (consulConfigProperties.isBatchFileReads()) {
+				// shares the transport of the ConsulClient, there is none for a custom one
+				consulRawClient.ifAvailable(rawClient -> locator.setTxnReader(new ConsulTxnKeyValueReader(rawClient)));
+			}
+			return locator;
 		}
 
 	}
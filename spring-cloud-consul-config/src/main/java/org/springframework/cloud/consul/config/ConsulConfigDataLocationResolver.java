@@ -21,9 +21,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.ConsulRawClient;
+import com.ecwid.consul.v1.kv.model.GetValue;
 import org.apache.commons.logging.Log;
 
 import org.springframework.boot.BootstrapContext;
@@ -41,6 +44,8 @@ import org.springframework.cloud.consul.ConsulAutoConfiguration;
 import org.springframework.cloud.consul.ConsulProperties;
 import org.springframework.cloud.consul.config.ConsulPropertySources.Context;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 import org.springframework.lang.Nullable;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
@@ -93,17 +98,33 @@ public class ConsulConfigDataLocationResolver implements ConfigDataLocationResol
 		// create consul client
 		registerBean(resolverContext, ConsulProperties.class, loadProperties(resolverContext, locationUri));
 
+		BootstrapContext bootstrapContext = resolverContext.getBootstrapContext();
+		if (!bootstrapContext.isRegistered(ConsulClient.class)) {
+			// the client shares its transport with the transaction reader
+			InstanceSupplier<ConsulRawClient> rawClientSupplier = this::createConsulRawClient;
+			registerBean(resolverContext, ConsulRawClient.class, rawClientSupplier);
+		}
 		registerAndPromoteBean(resolverContext, ConsulClient.class, this::createConsulClient);
 
 		// create locations
 		ConsulConfigProperties properties = loadConfigProperties(resolverContext);
 
 		ConsulPropertySources consulPropertySources = new ConsulPropertySources(properties, log);
+		consulPropertySources.setApplicationStartup(getApplicationStartup(resolverContext.getBootstrapContext()));
+		// a ConsulClient registered without its ConsulRawClient is not bypassed
+		if (properties.isBatchFileReads() && bootstrapContext.isRegistered(ConsulRawClient.class)) {
+			InstanceSupplier<ConsulTxnKeyValueReader> txnReaderSupplier = context -> new ConsulTxnKeyValueReader(
+					context.get(ConsulRawClient.class));
+			registerBean(resolverContext, ConsulTxnKeyValueReader.class, txnReaderSupplier);
+			consulPropertySources.setTxnReader(bootstrapContext.get(ConsulTxnKeyValueReader.class));
+		}
 
 		List<Context> contexts = (locationUri == null || CollectionUtils.isEmpty(locationUri.getPathSegments()))
 				? consulPropertySources.generateAutomaticContexts(profiles.getAccepted(), false)
 				: getCustomContexts(locationUri, properties);
 
+		consulPropertySources.setPrefetchContexts(contexts.stream().map(Context::getPath).collect(Collectors.toList()));
+
 		registerAndPromoteBean(resolverContext, ConsulConfigProperties.class, InstanceSupplier.of(properties));
 
 		registerAndPromoteBean(resolverContext, ConsulConfigIndexes.class,
@@ -183,7 +204,29 @@ public class ConsulConfigDataLocationResolver implements ConfigDataLocationResol
 	protected ConsulClient createConsulClient(BootstrapContext context) {
 		ConsulProperties properties = context.get(ConsulProperties.class);
 
-		return ConsulAutoConfiguration.createConsulClient(properties);
+		StartupStep step = getApplicationStartup(context).start("spring.cloud.consul.client.create");
+		step.tag("host", properties.getHost() + ":" + properties.getPort());
+		try {
+			return new ConsulClient(context.getOrElseSupply(ConsulRawClient.class,
+					() -> ConsulAutoConfiguration.createConsulRawClient(properties)));
+		}
+		finally {
+			step.end();
+		}
+	}
+
+	protected ConsulRawClient createConsulRawClient(BootstrapContext context) {
+		return ConsulAutoConfiguration.createConsulRawClient(context.get(ConsulProperties.class));
+	}
+
+	/**
+	 * The application startup is not known to the bootstrap context unless a
+	 * {@link org.springframework.boot.Bootstrapper} registers it.
+	 * @param context the bootstrap context
+	 * @return the registered application startup, or the default no-op one
+	 */
+	static ApplicationStartup getApplicationStartup(BootstrapContext context) {
+		return context.getOrElse(ApplicationStartup.class, ApplicationStartup.DEFAULT);
 	}
 
 	protected ConsulProperties loadProperties(ConfigDataLocationResolverContext resolverContext,
@@ -222,11 +265,23 @@ public class ConsulConfigDataLocationResolver implements ConfigDataLocationResol
 
 		private final LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
 
+		private final Map<String, List<GetValue>> values = new LinkedHashMap<>();
+
 		@Override
 		public LinkedHashMap<String, Long> getIndexes() {
 			return indexes;
 		}
 
+		@Override
+		public Map<String, List<GetValue>> getValues() {
+			return values;
+		}
+
+		@Override
+		public void putValues(String context, List<GetValue> values) {
+			this.values.put(context, values);
+		}
+
 	}
 
 }
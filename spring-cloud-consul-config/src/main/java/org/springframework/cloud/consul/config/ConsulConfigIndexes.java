@@ -16,10 +16,32 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ecwid.consul.v1.kv.model.GetValue;
 
 public interface ConsulConfigIndexes {
 
 	LinkedHashMap<String, Long> getIndexes();
 
+	/**
+	 * @return the values loaded for every context, the watch only publishes a change
+	 * of a context once its values differ from them
+	 */
+	default Map<String, List<GetValue>> getValues() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Records the values loaded for a context. Implementations that do not keep them
+	 * make the watch publish the first index change of every context.
+	 * @param context the loaded context
+	 * @param values the values of the context
+	 */
+	default void putValues(String context, List<GetValue> values) {
+	}
+
 }
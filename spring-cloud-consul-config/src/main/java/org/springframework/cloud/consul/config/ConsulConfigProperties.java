@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -27,6 +29,9 @@ import javax.validation.constraints.NotNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.DeprecatedConfigurationProperty;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.boot.convert.DurationUnit;
+import org.springframework.cloud.consul.WatchBackoffProperties;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.util.CollectionUtils;
 import org.springframework.validation.annotation.Validated;
@@ -75,6 +80,53 @@ public class ConsulConfigProperties {
 	 */
 	private boolean failFast = true;
 
+	/**
+	 * The maximum number of contexts that are fetched concurrently while loading the
+	 * configuration. Defaults to 1, which fetches one context after another.
+	 */
+	private int loadConcurrency = 1;
+
+	/**
+	 * How the contexts are read from consul while loading the configuration.
+	 */
+	private LoadStrategy loadStrategy = LoadStrategy.CONTEXT;
+
+	/**
+	 * List the keys of the folders containing the contexts before loading them and skip
+	 * the requests for contexts that don't exist.
+	 */
+	private boolean skipMissingContexts = false;
+
+	/**
+	 * Read the contexts of the FILES format with batched transactions instead of one
+	 * request per context.
+	 */
+	private boolean batchFileReads = false;
+
+	/**
+	 * Keep the values read from consul and parse them only when the properties of their
+	 * context are first read, instead of while loading the configuration.
+	 */
+	private boolean lazyParsing = false;
+
+	/**
+	 * Serve the properties of all contexts located at bootstrap from a single merged
+	 * index instead of looking them up in every context in turn.
+	 */
+	private boolean mergeContexts = false;
+
+	/**
+	 * Max staleness of reads served by any consul server instead of the leader. A read
+	 * from a server that was out of contact with the leader for longer is issued again
+	 * with the default consistency mode. Reads go to the leader if not set.
+	 */
+	private Duration maxStaleness;
+
+	/**
+	 * Local snapshot of the loaded contexts, used when consul can't be reached.
+	 */
+	private Snapshot snapshot = new Snapshot();
+
 	/**
 	 * Alternative to spring.application.name to use in looking up values in consul KV.
 	 */
@@ -181,6 +233,70 @@ public class ConsulConfigProperties {
 		this.failFast = failFast;
 	}
 
+	public int getLoadConcurrency() {
+		return this.loadConcurrency;
+	}
+
+	public void setLoadConcurrency(int loadConcurrency) {
+		this.loadConcurrency = loadConcurrency;
+	}
+
+	public LoadStrategy getLoadStrategy() {
+		return this.loadStrategy;
+	}
+
+	public void setLoadStrategy(LoadStrategy loadStrategy) {
+		this.loadStrategy = loadStrategy;
+	}
+
+	public boolean isSkipMissingContexts() {
+		return this.skipMissingContexts;
+	}
+
+	public void setSkipMissingContexts(boolean skipMissingContexts) {
+		this.skipMissingContexts = skipMissingContexts;
+	}
+
+	public boolean isBatchFileReads() {
+		return this.batchFileReads;
+	}
+
+	public void setBatchFileReads(boolean batchFileReads) {
+		this.batchFileReads = batchFileReads;
+	}
+
+	public boolean isLazyParsing() {
+		return this.lazyParsing;
+	}
+
+	public void setLazyParsing(boolean lazyParsing) {
+		this.lazyParsing = lazyParsing;
+	}
+
+	public boolean isMergeContexts() {
+		return this.mergeContexts;
+	}
+
+	public void setMergeContexts(boolean mergeContexts) {
+		this.mergeContexts = mergeContexts;
+	}
+
+	public Duration getMaxStaleness() {
+		return this.maxStaleness;
+	}
+
+	public void setMaxStaleness(Duration maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	public Snapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	public void setSnapshot(Snapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
 	public String getName() {
 		return this.name;
 	}
@@ -194,7 +310,12 @@ public class ConsulConfigProperties {
 		return new ToStringCreator(this).append("enabled", this.enabled).append("prefixes", this.prefixes)
 				.append("defaultContext", this.defaultContext).append("profileSeparator", this.profileSeparator)
 				.append("format", this.format).append("dataKey", this.dataKey).append("aclToken", this.aclToken)
-				.append("watch", this.watch).append("failFast", this.failFast).append("name", this.name).toString();
+				.append("watch", this.watch).append("failFast", this.failFast)
+				.append("loadConcurrency", this.loadConcurrency).append("loadStrategy", this.loadStrategy)
+				.append("skipMissingContexts", this.skipMissingContexts).append("batchFileReads", this.batchFileReads)
+				.append("lazyParsing", this.lazyParsing).append("mergeContexts", this.mergeContexts)
+				.append("maxStaleness", this.maxStaleness)
+				.append("snapshot", this.snapshot).append("name", this.name).toString();
 	}
 
 	/**
@@ -247,6 +368,95 @@ public class ConsulConfigProperties {
 
 	}
 
+	/**
+	 * The different ways of reading the configured contexts.
+	 */
+	public enum LoadStrategy {
+
+		/**
+		 * Reads every context with its own request.
+		 */
+		CONTEXT,
+
+		/**
+		 * Reads every configured prefix with a single recursive request and assigns the
+		 * returned keys to the contexts locally. Contexts outside of the configured
+		 * prefixes are still read on their own.
+		 */
+		PREFIX,
+
+	}
+
+	/**
+	 * Local snapshot properties.
+	 */
+	public static class Snapshot {
+
+		/** If the loaded contexts are saved to a local file. Defaults to false. */
+		private boolean enabled = false;
+
+		/**
+		 * The file the contexts are saved to. Required with start from snapshot. Defaults
+		 * to a file named after the application in the .spring-cloud-consul folder of the
+		 * user home directory.
+		 */
+		private String path;
+
+		/**
+		 * The maximum age of a saved context that is still loaded from the file. Defaults
+		 * to 1 day.
+		 */
+		@DurationUnit(ChronoUnit.SECONDS)
+		private Duration maxAge = Duration.ofDays(1);
+
+		/**
+		 * If saved contexts are loaded from the file on startup without reading them from
+		 * consul first. The watch then picks up the changes made since the file was
+		 * saved. Defaults to false, which only loads a context from the file when it
+		 * can't be read from consul.
+		 */
+		private boolean startFromSnapshot = false;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getPath() {
+			return this.path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public Duration getMaxAge() {
+			return this.maxAge;
+		}
+
+		public void setMaxAge(Duration maxAge) {
+			this.maxAge = maxAge;
+		}
+
+		public boolean isStartFromSnapshot() {
+			return this.startFromSnapshot;
+		}
+
+		public void setStartFromSnapshot(boolean startFromSnapshot) {
+			this.startFromSnapshot = startFromSnapshot;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringCreator(this).append("enabled", this.enabled).append("path", this.path)
+					.append("maxAge", this.maxAge).append("startFromSnapshot", this.startFromSnapshot).toString();
+		}
+
+	}
+
 	/**
 	 * Consul watch properties.
 	 */
@@ -266,6 +476,63 @@ public class ConsulConfigProperties {
 		/** The value of the fixed delay for the watch in millis. Defaults to 1000. */
 		private int delay = 1000;
 
+		/**
+		 * The number of contexts watched concurrently, each with its own blocking query.
+		 * Defaults to 1, which watches all contexts serially from a single thread.
+		 */
+		private int concurrency = 1;
+
+		/**
+		 * How contexts are watched. Defaults to one blocking query per context.
+		 */
+		private Strategy strategy = Strategy.CONTEXT;
+
+		/**
+		 * The key watched by the SENTINEL strategy, relative to each context, or to the
+		 * folder of each file with the FILES format. Defaults to .version.
+		 */
+		private String sentinelKey = ".version";
+
+		/**
+		 * If the blocking queries of the CONTEXT and PREFIX strategies list the keys only
+		 * and the values are read once the index moved. Defaults to false.
+		 */
+		private boolean keysOnly = false;
+
+		/**
+		 * If changed values are applied directly to the property sources loaded from the
+		 * changed context instead of publishing a Refresh Event that reloads every
+		 * context. Changed properties are rebound and the refresh scope is refreshed.
+		 * Defaults to false.
+		 */
+		private boolean updateInPlace = false;
+
+		/**
+		 * The quiet period in millis after the last detected change before a refresh is
+		 * published. Changes detected within the period are combined into a single
+		 * refresh. Defaults to 0, which publishes every change right away.
+		 */
+		private int refreshQuietPeriod = 0;
+
+		/**
+		 * The maximum delay in millis between the first combined change and the refresh
+		 * when changes keep arriving within the quiet period. Defaults to 10000.
+		 */
+		private int refreshMaxDelay = 10000;
+
+		/**
+		 * If refreshes are published on a separate thread instead of the thread running
+		 * the watch. Changes detected while a refresh runs are combined into the next one.
+		 * Defaults to false.
+		 */
+		private boolean asyncRefresh = false;
+
+		/**
+		 * Backoff of a watch whose queries fail, for example while the agent is down.
+		 */
+		@NestedConfigurationProperty
+		private WatchBackoffProperties backoff = new WatchBackoffProperties();
+
 		public Watch() {
 		}
 
@@ -293,10 +560,110 @@ public class ConsulConfigProperties {
 			this.delay = delay;
 		}
 
+		public int getConcurrency() {
+			return this.concurrency;
+		}
+
+		public void setConcurrency(int concurrency) {
+			this.concurrency = concurrency;
+		}
+
+		public Strategy getStrategy() {
+			return this.strategy;
+		}
+
+		public void setStrategy(Strategy strategy) {
+			this.strategy = strategy;
+		}
+
+		public String getSentinelKey() {
+			return this.sentinelKey;
+		}
+
+		public void setSentinelKey(String sentinelKey) {
+			this.sentinelKey = sentinelKey;
+		}
+
+		public boolean isKeysOnly() {
+			return this.keysOnly;
+		}
+
+		public void setKeysOnly(boolean keysOnly) {
+			this.keysOnly = keysOnly;
+		}
+
+		public boolean isUpdateInPlace() {
+			return this.updateInPlace;
+		}
+
+		public void setUpdateInPlace(boolean updateInPlace) {
+			this.updateInPlace = updateInPlace;
+		}
+
+		public int getRefreshQuietPeriod() {
+			return this.refreshQuietPeriod;
+		}
+
+		public void setRefreshQuietPeriod(int refreshQuietPeriod) {
+			this.refreshQuietPeriod = refreshQuietPeriod;
+		}
+
+		public int getRefreshMaxDelay() {
+			return this.refreshMaxDelay;
+		}
+
+		public void setRefreshMaxDelay(int refreshMaxDelay) {
+			this.refreshMaxDelay = refreshMaxDelay;
+		}
+
+		public boolean isAsyncRefresh() {
+			return this.asyncRefresh;
+		}
+
+		public void setAsyncRefresh(boolean asyncRefresh) {
+			this.asyncRefresh = asyncRefresh;
+		}
+
+		public WatchBackoffProperties getBackoff() {
+			return this.backoff;
+		}
+
+		public void setBackoff(WatchBackoffProperties backoff) {
+			this.backoff = backoff;
+		}
+
 		@Override
 		public String toString() {
 			return new ToStringCreator(this).append("waitTime", this.waitTime).append("enabled", this.enabled)
-					.append("delay", this.delay).toString();
+					.append("delay", this.delay).append("concurrency", this.concurrency)
+					.append("strategy", this.strategy).append("sentinelKey", this.sentinelKey)
+					.append("keysOnly", this.keysOnly).append("updateInPlace", this.updateInPlace)
+					.append("refreshQuietPeriod", this.refreshQuietPeriod).append("refreshMaxDelay", this.refreshMaxDelay)
+					.append("asyncRefresh", this.asyncRefresh).append("backoff", this.backoff).toString();
+		}
+
+		/**
+		 * The different ways of watching the configured contexts.
+		 */
+		public enum Strategy {
+
+			/**
+			 * Issues one blocking query per context.
+			 */
+			CONTEXT,
+
+			/**
+			 * Issues one recursive blocking query on the folder shared by the contexts of
+			 * each prefix and maps the returned keys back to the contexts locally.
+			 */
+			PREFIX,
+
+			/**
+			 * Issues one blocking query per context on its sentinel key only and reads the
+			 * context once the sentinel key is written.
+			 */
+			SENTINEL,
+
 		}
 
 	}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ecwid.consul.v1.kv.model.GetValue;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A file holding the values and indexes of the contexts last loaded from consul, so they
+ * can be loaded from it when consul can't be reached. Values are kept Base64 encoded, as
+ * returned by consul. Loaded contexts are collected in memory and the file is replaced
+ * atomically on {@link #flush()}, readable by its owner only where the file system
+ * supports POSIX permissions.
+ */
+final class ConsulConfigSnapshot {
+
+	private static final Log log = LogFactory.getLog(ConsulConfigSnapshot.class);
+
+	private static final int MAGIC = 0x43435331;
+
+	private static final long NO_INDEX = Long.MIN_VALUE;
+
+	/**
+	 * Snapshots by file, shared by every load of the application, including the loads of
+	 * a refresh.
+	 */
+	private static final Map<Path, ConsulConfigSnapshot> snapshots = new ConcurrentHashMap<>();
+
+	private final Path path;
+
+	private final Map<String, Entry> entries;
+
+	private final Set<String> served = new HashSet<>();
+
+	private boolean dirty;
+
+	private ConsulConfigSnapshot(Path path, Map<String, Entry> entries) {
+		this.path = path;
+		this.entries = entries;
+	}
+
+	static ConsulConfigSnapshot forPath(Path path) {
+		return snapshots.computeIfAbsent(path.toAbsolutePath(), key -> new ConsulConfigSnapshot(key, read(key)));
+	}
+
+	/**
+	 * @param context a context
+	 * @param maxAge the maximum age of the saved context
+	 * @return the saved context, or null if it is not saved or older than the given age
+	 */
+	synchronized Entry get(String context, Duration maxAge) {
+		Entry entry = this.entries.get(context);
+		if (entry == null || System.currentTimeMillis() - entry.savedAt > maxAge.toMillis()) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Marks the context as served from the snapshot.
+	 * @param context a context
+	 * @return true if the context was not served from the snapshot before
+	 */
+	synchronized boolean markServed(String context) {
+		return this.served.add(context);
+	}
+
+	/**
+	 * Saves the given read of a context, to be written by the next {@link #flush()}.
+	 * @param context the context
+	 * @param index the consul index of the read
+	 * @param values the values of the context
+	 */
+	synchronized void put(String context, Long index, List<GetValue> values) {
+		this.entries.put(context, new Entry(index, values, System.currentTimeMillis()));
+		this.dirty = true;
+	}
+
+	/**
+	 * Writes the file if contexts were saved since it was last written.
+	 */
+	synchronized void flush() {
+		if (!this.dirty) {
+			return;
+		}
+		try {
+			write();
+			this.dirty = false;
+		}
+		catch (IOException e) {
+			log.warn("Unable to write consul config snapshot " + this.path, e);
+		}
+	}
+
+	private void write() throws IOException {
+		// the path is absolute, so it has a parent
+		Path directory = this.path.getParent();
+		boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+		if (posix && !Files.isDirectory(directory)) {
+			Files.createDirectories(directory,
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		}
+		else {
+			Files.createDirectories(directory);
+		}
+		// the values may hold secrets, only the owner may read the file
+		Path temp = posix
+				? Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp",
+						PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+				: Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(this.entries.size());
+				for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+					writeString(out, entry.getKey());
+					out.writeLong(entry.getValue().savedAt);
+					out.writeLong(entry.getValue().index != null ? entry.getValue().index : NO_INDEX);
+					out.writeInt(entry.getValue().values.size());
+					for (GetValue value : entry.getValue().values) {
+						writeString(out, value.getKey());
+						out.writeLong(value.getModifyIndex());
+						writeString(out, value.getValue());
+					}
+				}
+			}
+			try {
+				Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static Map<String, Entry> read(Path path) {
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		if (!Files.isRegularFile(path)) {
+			return entries;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a consul config snapshot");
+			}
+			// no count or length read from the file can be larger than the file itself
+			long size = Files.size(path);
+			int contexts = readCount(in, size);
+			for (int i = 0; i < contexts; i++) {
+				String context = readString(in, size);
+				long savedAt = in.readLong();
+				long index = in.readLong();
+				int count = readCount(in, size);
+				List<GetValue> values = new ArrayList<>(count);
+				for (int j = 0; j < count; j++) {
+					GetValue value = new GetValue();
+					value.setKey(readString(in, size));
+					value.setModifyIndex(in.readLong());
+					value.setValue(readString(in, size));
+					values.add(value);
+				}
+				entries.put(context, new Entry(index != NO_INDEX ? index : null, values, savedAt));
+			}
+		}
+		catch (IOException e) {
+			log.warn("Ignoring unreadable consul config snapshot " + path, e);
+			entries.clear();
+		}
+		return entries;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static int readCount(DataInputStream in, long size) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > size) {
+			throw new IOException("Corrupt consul config snapshot, invalid count " + count);
+		}
+		return count;
+	}
+
+	private static String readString(DataInputStream in, long size) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > size) {
+			throw new IOException("Corrupt consul config snapshot, invalid length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A context as saved in the snapshot.
+	 */
+	static final class Entry {
+
+		private final Long index;
+
+		private final List<GetValue> values;
+
+		private final long savedAt;
+
+		private Entry(Long index, List<GetValue> values, long savedAt) {
+			this.index = index;
+			this.values = (values != null) ? Collections.unmodifiableList(new ArrayList<>(values))
+					: Collections.emptyList();
+			this.savedAt = savedAt;
+		}
+
+		Long getIndex() {
+			return this.index;
+		}
+
+		List<GetValue> getValues() {
+			return this.values;
+		}
+
+		long getSavedAt() {
+			return this.savedAt;
+		}
+
+	}
+
+}
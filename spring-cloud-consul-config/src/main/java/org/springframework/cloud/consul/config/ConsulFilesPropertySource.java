@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.util.List;
+
 import com.ecwid.consul.v1.ConsulClient;
 import com.ecwid.consul.v1.kv.model.GetValue;
 
@@ -36,7 +38,23 @@ public class ConsulFilesPropertySource extends ConsulPropertySource {
 		// noop
 	}
 
+	@Override
+	protected void parseProperties(List<GetValue> values) {
+		if (values == null) {
+			return;
+		}
+		for (GetValue value : values) {
+			if (this.getContext().equals(value.getKey())) {
+				parseFile(value);
+			}
+		}
+	}
+
 	public void init(GetValue value) {
+		initProperties(() -> parseFile(value));
+	}
+
+	private void parseFile(GetValue value) {
 		if (this.getContext().endsWith(".yml") || this.getContext().endsWith(".yaml")) {
 			parseValue(value, YAML);
 		}
@@ -18,21 +18,30 @@ package org.springframework.cloud.consul.config;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 
 import com.ecwid.consul.v1.ConsulClient;
-import com.ecwid.consul.v1.QueryParams;
 import com.ecwid.consul.v1.Response;
 import com.ecwid.consul.v1.kv.model.GetValue;
 
 import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.cloud.consul.StaleReads;
 import org.springframework.core.env.EnumerablePropertySource;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.PROPERTIES;
@@ -44,7 +53,27 @@ import static org.springframework.util.Base64Utils.decodeFromString;
  */
 public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient> {
 
-	private final Map<String, Object> properties = new LinkedHashMap<>();
+	/**
+	 * Whether a class overrides the deprecated
+	 * {@link #generateProperties(String, ConsulConfigProperties.Format)}.
+	 */
+	private static final Map<Class<?>, Boolean> generatingFromString = new ConcurrentReferenceHashMap<>();
+
+	private final Object updateMonitor = new Object();
+
+	private Map<String, Object> properties = new LinkedHashMap<>();
+
+	/**
+	 * The properties served to readers, taken on the first read. Replaced as a whole by
+	 * {@link #update(List)} if the properties changed.
+	 */
+	private volatile PropertiesSnapshot snapshot;
+
+	/**
+	 * Parses the values the source was initialized with, if parsing is deferred until
+	 * the properties are first read.
+	 */
+	private volatile Runnable pendingParser;
 
 	private String context;
 
@@ -59,17 +88,132 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 
 	}
 
+	/**
+	 * Reads the values of the context from consul and initializes this source with them.
+	 * @deprecated since 3.0.4, {@link ConsulPropertySources} reads the values itself to
+	 * record them in startup steps, snapshots and the config watch, and only calls
+	 * {@link #init(List, Long)}, override that method instead
+	 */
+	@Deprecated
 	public void init() {
+		String context = this.context.endsWith("/") ? this.context : this.context + "/";
+		Response<List<GetValue>> response = StaleReads.read(this.configProperties.getMaxStaleness(),
+				params -> this.source.getKVValues(context, this.configProperties.getAclToken(), params));
+		init(response.getValue(), response.getConsulIndex());
+	}
+
+	/**
+	 * Initializes this source from values that were already read from consul, for
+	 * example with a recursive read of a parent folder. Every source loaded by
+	 * {@link ConsulPropertySources} is initialized through this method.
+	 * @param values the values of the context
+	 * @param index the consul index of the read
+	 */
+	public void init(List<GetValue> values, Long index) {
 		if (!this.context.endsWith("/")) {
 			this.context = this.context + "/";
 		}
 
-		Response<List<GetValue>> response = this.source.getKVValues(this.context, this.configProperties.getAclToken(),
-				QueryParams.DEFAULT);
+		this.initialIndex = index;
+
+		initProperties(() -> parseProperties(values));
+	}
+
+	public Long getInitialIndex() {
+		return this.initialIndex;
+	}
+
+	/**
+	 * Replaces the properties of this source with the given values of its context, for
+	 * example the values returned by a watch. Readers see either the previous or the new
+	 * properties, never a mix of both.
+	 * @param values the current values of the context
+	 * @return the names of the properties that were added, changed or removed
+	 */
+	public Set<String> update(List<GetValue> values) {
+		synchronized (this.updateMonitor) {
+			PropertiesSnapshot previous = getSnapshot();
+			this.properties = new LinkedHashMap<>();
+			parseProperties(values);
+			Map<String, Object> current = this.properties;
+
+			Set<String> changed = new LinkedHashSet<>();
+			for (Map.Entry<String, Object> entry : current.entrySet()) {
+				if (!previous.contains(entry.getKey())
+						|| !Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+					changed.add(entry.getKey());
+				}
+			}
+			for (String name : previous.getNames()) {
+				if (!current.containsKey(name)) {
+					changed.add(name);
+				}
+			}
+			if (!changed.isEmpty()) {
+				this.snapshot = new PropertiesSnapshot(current, previous);
+			}
+			return changed;
+		}
+	}
+
+	/**
+	 * Returns the version of the properties, incremented by every {@link #update(List)}
+	 * that changes them.
+	 * @return the version of the properties
+	 */
+	public long getVersion() {
+		return getSnapshot().getVersion();
+	}
+
+	/**
+	 * Runs the given parser right away, or on the first read of the properties if
+	 * {@link ConsulConfigProperties#isLazyParsing() lazy parsing} is enabled. A parser
+	 * that fails on first read is run again on the next read.
+	 * @param parser parses the initial values into {@link #getProperties()}
+	 */
+	protected void initProperties(Runnable parser) {
+		if (this.configProperties.isLazyParsing()) {
+			this.pendingParser = parser;
+		}
+		else {
+			parser.run();
+		}
+	}
+
+	private void parsePending() {
+		if (this.pendingParser == null) {
+			return;
+		}
+		synchronized (this.updateMonitor) {
+			Runnable parser = this.pendingParser;
+			if (parser != null) {
+				// start over if a previous attempt failed half way
+				this.properties = new LinkedHashMap<>();
+				parser.run();
+				this.pendingParser = null;
+			}
+		}
+	}
 
-		this.initialIndex = response.getConsulIndex();
+	private PropertiesSnapshot getSnapshot() {
+		PropertiesSnapshot snapshot = this.snapshot;
+		if (snapshot == null) {
+			synchronized (this.updateMonitor) {
+				parsePending();
+				if (this.snapshot == null) {
+					this.snapshot = new PropertiesSnapshot(this.properties);
+				}
+				snapshot = this.snapshot;
+			}
+		}
+		return snapshot;
+	}
 
-		final List<GetValue> values = response.getValue();
+	/**
+	 * Parses the values of the context according to the configured format.
+	 * @param values values to parse
+	 */
+	protected void parseProperties(List<GetValue> values) {
 		ConsulConfigProperties.Format format = this.configProperties.getFormat();
 		switch (format) {
 		case KEY_VALUE:
@@ -81,10 +225,6 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 		}
 	}
 
-	public Long getInitialIndex() {
-		return this.initialIndex;
-	}
-
 	/**
 	 * Parses the properties in key value style i.e., values are expected to be either a
 	 * sub key or a constant.
@@ -98,7 +238,7 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 		for (GetValue getValue : values) {
 			String key = getValue.getKey();
 			if (!StringUtils.endsWithIgnoreCase(key, "/")) {
-				key = key.replace(this.context, "").replace('/', '.');
+				key = stripContext(key).replace('/', '.');
 				String value = getValue.getDecodedValue();
 				this.properties.put(key, value);
 			}
@@ -117,26 +257,52 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 		}
 
 		for (GetValue getValue : values) {
-			String key = getValue.getKey().replace(this.context, "");
+			String key = stripContext(getValue.getKey());
 			if (this.configProperties.getDataKey().equals(key)) {
 				parseValue(getValue, format);
 			}
 		}
 	}
 
+	/**
+	 * Removes the context from the start of a key, leaving occurrences of the context
+	 * further into the key in place.
+	 * @param key a consul key
+	 * @return the key relative to the context
+	 */
+	protected String stripContext(String key) {
+		return key.startsWith(this.context) ? key.substring(this.context.length()) : key;
+	}
+
 	protected void parseValue(GetValue getValue, ConsulConfigProperties.Format format) {
-		String value = getValue.getDecodedValue();
-		if (value == null) {
+		if (getValue.getValue() == null) {
 			return;
 		}
 
-		Properties props = generateProperties(value, format);
+		Properties props;
+		if (isGeneratingFromString()) {
+			props = generateProperties(getValue.getDecodedValue(), format);
+		}
+		else {
+			// decode while parsing instead of decoding the whole value upfront
+			props = generateProperties(new EncodedValueResource(getValue.getKey(), getValue.getValue()), format);
+		}
 
 		for (Map.Entry entry : props.entrySet()) {
 			this.properties.put(entry.getKey().toString(), entry.getValue());
 		}
 	}
 
+	/**
+	 * Generates the properties of a decoded value. Still used instead of
+	 * {@link #generateProperties(Resource, ConsulConfigProperties.Format)} if overridden.
+	 * @param value the decoded value
+	 * @param format the format of the value
+	 * @return the properties
+	 * @deprecated since 3.0.4, override
+	 * {@link #generateProperties(Resource, ConsulConfigProperties.Format)} instead
+	 */
+	@Deprecated
 	protected Properties generateProperties(String value, ConsulConfigProperties.Format format) {
 		final Properties props = new Properties();
 
@@ -162,6 +328,41 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 		return props;
 	}
 
+	protected Properties generateProperties(Resource resource, ConsulConfigProperties.Format format) {
+		final Properties props = new Properties();
+
+		if (format == PROPERTIES) {
+			try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+				props.load(reader);
+			}
+			catch (IOException e) {
+				throw new IllegalArgumentException("Unable to read properties from " + resource.getDescription(), e);
+			}
+
+			return props;
+		}
+		else if (format == YAML) {
+			final YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+			yaml.setResources(resource);
+
+			return yaml.getObject();
+		}
+
+		return props;
+	}
+
+	/**
+	 * @return true if a subclass overrides the deprecated
+	 * {@link #generateProperties(String, ConsulConfigProperties.Format)}
+	 */
+	private boolean isGeneratingFromString() {
+		return generatingFromString.computeIfAbsent(getClass(), type -> {
+			Method method = ReflectionUtils.findMethod(type, "generateProperties", String.class,
+					ConsulConfigProperties.Format.class);
+			return method != null && method.getDeclaringClass() != ConsulPropertySource.class;
+		});
+	}
+
 	/**
 	 * @deprecated As of 1.1.0 use {@link GetValue#getDecodedValue()}.
 	 * @param value encoded value
@@ -176,6 +377,7 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 	}
 
 	protected Map<String, Object> getProperties() {
+		parsePending();
 		return this.properties;
 	}
 
@@ -189,13 +391,22 @@ public class ConsulPropertySource extends EnumerablePropertySource<ConsulClient>
 
 	@Override
 	public Object getProperty(String name) {
-		return this.properties.get(name);
+		return getSnapshot().get(name);
 	}
 
+	@Override
+	public boolean containsProperty(String name) {
+		return getSnapshot().contains(name);
+	}
+
+	/**
+	 * Returns the names of the properties. The same array is returned until an update
+	 * changes the names, so it must not be modified.
+	 * @return the names of the properties
+	 */
 	@Override
 	public String[] getPropertyNames() {
-		Set<String> strings = this.properties.keySet();
-		return strings.toArray(new String[strings.size()]);
+		return getSnapshot().getNames();
 	}
 
 }
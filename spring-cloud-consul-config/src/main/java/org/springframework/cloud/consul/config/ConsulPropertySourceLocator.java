@@ -19,10 +19,13 @@ package org.springframework.cloud.consul.config;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.kv.model.GetValue;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -50,6 +53,10 @@ public class ConsulPropertySourceLocator implements PropertySourceLocator, Consu
 
 	private final LinkedHashMap<String, Long> contextIndex = new LinkedHashMap<>();
 
+	private final Map<String, List<GetValue>> contextValues = new LinkedHashMap<>();
+
+	private ConsulTxnKeyValueReader txnReader;
+
 	public ConsulPropertySourceLocator(ConsulClient consul, ConsulConfigProperties properties) {
 		this.consul = consul;
 		this.properties = properties;
@@ -60,14 +67,33 @@ public class ConsulPropertySourceLocator implements PropertySourceLocator, Consu
 		return this.contexts;
 	}
 
+	public void setTxnReader(ConsulTxnKeyValueReader txnReader) {
+		this.txnReader = txnReader;
+	}
+
 	@Override
 	public LinkedHashMap<String, Long> getIndexes() {
 		return this.contextIndex;
 	}
 
+	@Override
+	public Map<String, List<GetValue>> getValues() {
+		return this.contextValues;
+	}
+
+	@Override
+	public void putValues(String context, List<GetValue> values) {
+		this.contextValues.put(context, values);
+	}
+
 	@Override
 	@Retryable(interceptor = "consulRetryInterceptor")
 	public Collection<PropertySource<?>> locateCollection(Environment environment) {
+		if (this.properties.isMergeContexts()) {
+			// keep the merged composite instead of adding its children one by one
+			PropertySource<?> propertySource = locate(environment);
+			return (propertySource != null) ? Collections.singletonList(propertySource) : Collections.emptyList();
+		}
 		return PropertySourceLocator.locateCollection(this, environment);
 	}
 
@@ -82,11 +108,15 @@ public class ConsulPropertySourceLocator implements PropertySourceLocator, Consu
 			List<String> profiles = Arrays.asList(env.getActiveProfiles());
 			this.contexts.addAll(sources.getAutomaticContexts(profiles));
 
-			CompositePropertySource composite = new CompositePropertySource("consul");
+			sources.setPrefetchContexts(this.contexts);
+			sources.setTxnReader(this.txnReader);
+
+			CompositePropertySource composite = this.properties.isMergeContexts()
+					? new ConsulCompositePropertySource("consul") : new CompositePropertySource("consul");
 
 			for (String propertySourceContext : this.contexts) {
 				ConsulPropertySource propertySource = sources.createPropertySource(propertySourceContext, this.consul,
-						contextIndex::put);
+						contextIndex::put, contextValues::put);
 				if (propertySource != null) {
 					composite.addPropertySource(propertySource);
 				}
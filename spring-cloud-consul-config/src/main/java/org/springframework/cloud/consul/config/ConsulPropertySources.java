@@ -16,10 +16,21 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -28,10 +39,16 @@ import com.ecwid.consul.v1.Response;
 import com.ecwid.consul.v1.kv.model.GetValue;
 import org.apache.commons.logging.Log;
 
+import org.springframework.cloud.consul.StaleReads;
+import org.springframework.cloud.consul.WatchThreads;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 import org.springframework.core.style.ToStringCreator;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.FILES;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.LoadStrategy.PREFIX;
 
 public class ConsulPropertySources {
 
@@ -44,9 +61,88 @@ public class ConsulPropertySources {
 
 	private final Log log;
 
+	private final ConsulConfigSnapshot snapshot;
+
+	private final Map<String, Future<LoadResult>> prefetched = new ConcurrentHashMap<>();
+
+	private final Map<String, Response<List<GetValue>>> prefixValues = new ConcurrentHashMap<>();
+
+	private final Map<String, Response<List<String>>> folderKeys = new ConcurrentHashMap<>();
+
+	private volatile List<String> prefetchContexts = Collections.emptyList();
+
+	/**
+	 * Contexts about to be loaded, the snapshot is written once all of them were loaded.
+	 */
+	private final Map<String, List<GetValue>> loadedValues = new ConcurrentHashMap<>();
+
+	private final Set<String> unsavedContexts = ConcurrentHashMap.newKeySet();
+
+	private ConsulTxnKeyValueReader txnReader;
+
+	private List<String> batchContexts = Collections.emptyList();
+
+	private Map<String, Response<GetValue>> filesValues;
+
+	private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+
 	public ConsulPropertySources(ConsulConfigProperties properties, Log log) {
 		this.properties = properties;
 		this.log = log;
+		this.snapshot = properties.getSnapshot().isEnabled() ? ConsulConfigSnapshot.forPath(getSnapshotPath())
+				: null;
+	}
+
+	private Path getSnapshotPath() {
+		String path = this.properties.getSnapshot().getPath();
+		if (StringUtils.hasText(path)) {
+			return Paths.get(path);
+		}
+		// the config is loaded from the file without consul, so it must be where only
+		// the application writes
+		if (this.properties.getSnapshot().isStartFromSnapshot()) {
+			throw new IllegalStateException(
+					"spring.cloud.consul.config.snapshot.path must be set to start from the snapshot");
+		}
+		String name = StringUtils.hasText(this.properties.getName()) ? this.properties.getName() : "application";
+		return Paths.get(System.getProperty("user.home"), ".spring-cloud-consul",
+				"consul-config-" + name + ".snapshot");
+	}
+
+	/**
+	 * Sets the contexts that are about to be loaded. If the load concurrency is greater
+	 * than 1, the first call to
+	 * {@link #createPropertySource(String, ConsulClient, BiConsumer)} for one of them
+	 * fetches all of them concurrently. Their property sources are still handed out, and
+	 * their indexes reported, in the order in which they are requested.
+	 * @param contexts the contexts to load
+	 */
+	public void setPrefetchContexts(List<String> contexts) {
+		this.prefetchContexts = new ArrayList<>(contexts);
+		this.unsavedContexts.addAll(contexts);
+		synchronized (this.prefetched) {
+			this.batchContexts = new ArrayList<>(contexts);
+			this.filesValues = null;
+		}
+	}
+
+	/**
+	 * Sets the reader used to read the contexts passed to
+	 * {@link #setPrefetchContexts(List)} with batched transactions if the format is
+	 * FILES.
+	 * @param txnReader the transaction reader
+	 */
+	public void setTxnReader(ConsulTxnKeyValueReader txnReader) {
+		this.txnReader = txnReader;
+	}
+
+	/**
+	 * Sets the application startup recording a {@code spring.cloud.consul.config.load}
+	 * step for every context loaded.
+	 * @param applicationStartup the application startup
+	 */
+	public void setApplicationStartup(ApplicationStartup applicationStartup) {
+		this.applicationStartup = applicationStartup;
 	}
 
 	public List<String> getAutomaticContexts(List<String> profiles) {
@@ -117,21 +213,155 @@ public class ConsulPropertySources {
 
 	public ConsulPropertySource createPropertySource(String propertySourceContext, ConsulClient consul,
 			BiConsumer<String, Long> indexConsumer) {
+		return createPropertySource(propertySourceContext, consul, indexConsumer, (context, values) -> {
+		});
+	}
+
+	/**
+	 * @param propertySourceContext the context to load
+	 * @param consul the consul client
+	 * @param indexConsumer receives the index of every loaded context
+	 * @param valuesConsumer receives the values of every loaded context, so the watch
+	 * can compare the first values it reads with them
+	 * @return the property source of the context, or null if it is missing
+	 */
+	public ConsulPropertySource createPropertySource(String propertySourceContext, ConsulClient consul,
+			BiConsumer<String, Long> indexConsumer, BiConsumer<String, List<GetValue>> valuesConsumer) {
+		ConsulPropertySource propertySource = doCreatePropertySource(propertySourceContext, consul, indexConsumer);
+		List<GetValue> values = this.loadedValues.remove(propertySourceContext);
+		if (values != null) {
+			valuesConsumer.accept(propertySourceContext, values);
+		}
+		return propertySource;
+	}
+
+	private ConsulPropertySource doCreatePropertySource(String propertySourceContext, ConsulClient consul,
+			BiConsumer<String, Long> indexConsumer) {
+		Future<LoadResult> result = getPrefetched(propertySourceContext, consul);
+		if (result != null) {
+			try {
+				return result.get().apply(indexConsumer);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PropertySourceNotFoundException(propertySourceContext, e);
+			}
+			catch (ExecutionException e) {
+				ReflectionUtils.rethrowRuntimeException(e.getCause());
+			}
+		}
+		return load(propertySourceContext, consul, indexConsumer);
+	}
+
+	private Future<LoadResult> getPrefetched(String propertySourceContext, ConsulClient consul) {
+		if (this.properties.getLoadConcurrency() <= 1 || !this.prefetchContexts.contains(propertySourceContext)) {
+			return null;
+		}
+		synchronized (this.prefetched) {
+			List<String> contexts = this.prefetchContexts;
+			if (!contexts.isEmpty()) {
+				this.prefetchContexts = Collections.emptyList();
+				prefetch(contexts, consul);
+			}
+		}
+		// a prefetched result is only used once, a retry loads the context again
+		return this.prefetched.remove(propertySourceContext);
+	}
+
+	private void prefetch(List<String> contexts, ConsulClient consul) {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(contexts.size(), this.properties.getLoadConcurrency()),
+				WatchThreads.newThreadFactory("consul-config-load-"));
+		try {
+			for (String context : contexts) {
+				this.prefetched.put(context, executor.submit(() -> {
+					LoadResult result = new LoadResult();
+					result.propertySource = load(context, consul, result::addIndex);
+					return result;
+				}));
+			}
+		}
+		finally {
+			// running loads complete, the threads end afterwards
+			executor.shutdown();
+		}
+	}
+
+	private ConsulPropertySource load(String propertySourceContext, ConsulClient consul,
+			BiConsumer<String, Long> indexConsumer) {
+		StartupStep step = this.applicationStartup.start("spring.cloud.consul.config.load");
+		step.tag("context", propertySourceContext);
+		try {
+			return load(propertySourceContext, consul, indexConsumer, step);
+		}
+		finally {
+			step.end();
+			flushSnapshot(propertySourceContext);
+		}
+	}
+
+	/**
+	 * Writes the snapshot once the last of the contexts about to be loaded was loaded,
+	 * or right away for a context loaded on its own.
+	 */
+	private void flushSnapshot(String context) {
+		if (this.snapshot != null) {
+			this.unsavedContexts.remove(context);
+			if (this.unsavedContexts.isEmpty()) {
+				this.snapshot.flush();
+			}
+		}
+	}
+
+	private ConsulPropertySource load(String propertySourceContext, ConsulClient consul,
+			BiConsumer<String, Long> indexConsumer, StartupStep step) {
+		if (this.snapshot != null && this.properties.getSnapshot().isStartFromSnapshot()) {
+			ConsulConfigSnapshot.Entry entry = this.snapshot.get(propertySourceContext,
+					this.properties.getSnapshot().getMaxAge());
+			// only the first load is served from the file, later loads are refreshes
+			if (entry != null && this.snapshot.markServed(propertySourceContext)) {
+				return loadFromSnapshot(propertySourceContext, entry, consul, indexConsumer, step);
+			}
+		}
 		try {
 			ConsulPropertySource propertySource = null;
 
-			if (properties.getFormat() == FILES) {
-				Response<GetValue> response = consul.getKVValue(propertySourceContext, properties.getAclToken());
+			Long missingIndex = getMissingContextIndex(propertySourceContext, consul);
+			String prefix = getLoadPrefix(propertySourceContext);
+			if (missingIndex != null) {
+				if (log.isDebugEnabled()) {
+					log.debug("Skipping missing consul context " + propertySourceContext);
+				}
+				// the watch still picks up the context once it is created
+				indexConsumer.accept(propertySourceContext, missingIndex);
+				step.tag("status", "skipped");
+				saveValues(propertySourceContext, missingIndex, null);
+			}
+			else if (prefix != null) {
+				propertySource = createFromPrefix(propertySourceContext, prefix, consul, indexConsumer, step);
+			}
+			else if (properties.getFormat() == FILES) {
+				Response<GetValue> response = getBatchedFileValue(propertySourceContext);
+				if (response == null) {
+					response = StaleReads.read(properties.getMaxStaleness(),
+							params -> consul.getKVValue(propertySourceContext, properties.getAclToken(), params));
+				}
 				indexConsumer.accept(propertySourceContext, response.getConsulIndex());
+				List<GetValue> values = (response.getValue() != null) ? Collections.singletonList(response.getValue())
+						: null;
+				tagRead(step, response.getConsulIndex(), values);
+				saveValues(propertySourceContext, response.getConsulIndex(), values);
 				if (response.getValue() != null) {
 					ConsulFilesPropertySource filesPropertySource = new ConsulFilesPropertySource(propertySourceContext,
 							consul, properties);
+					long start = System.nanoTime();
 					filesPropertySource.init(response.getValue());
+					tagParse(step, start);
 					propertySource = filesPropertySource;
 				}
 			}
 			else {
-				propertySource = create(propertySourceContext, consul, indexConsumer);
+				propertySource = create(propertySourceContext, consul, indexConsumer, step);
 			}
 			return propertySource;
 		}
@@ -139,6 +369,15 @@ public class ConsulPropertySources {
 			throw e;
 		}
 		catch (Exception e) {
+			step.tag("status", "failed");
+			step.tag("exception", e.getClass().getName());
+			ConsulConfigSnapshot.Entry entry = (this.snapshot != null)
+					? this.snapshot.get(propertySourceContext, this.properties.getSnapshot().getMaxAge()) : null;
+			if (entry != null) {
+				log.warn("Unable to load consul config from " + propertySourceContext
+						+ ", loading it from the snapshot saved at " + Instant.ofEpochMilli(entry.getSavedAt()), e);
+				return loadFromSnapshot(propertySourceContext, entry, consul, indexConsumer, step);
+			}
 			if (properties.isFailFast()) {
 				throw new PropertySourceNotFoundException(propertySourceContext, e);
 			}
@@ -149,14 +388,227 @@ public class ConsulPropertySources {
 		return null;
 	}
 
+	/**
+	 * @return the configured prefix to read the context with, or null if the context is
+	 * read on its own
+	 */
+	private String getLoadPrefix(String context) {
+		if (this.properties.getLoadStrategy() != PREFIX) {
+			return null;
+		}
+		String loadPrefix = null;
+		for (String prefix : this.properties.getPrefixes()) {
+			// never read the whole key value store
+			if (StringUtils.hasText(prefix) && context.startsWith(prefix + "/")
+					&& (loadPrefix == null || prefix.length() > loadPrefix.length())) {
+				loadPrefix = prefix;
+			}
+		}
+		return loadPrefix;
+	}
+
+	/**
+	 * Reads all FILES contexts about to be loaded with batched transactions on the first
+	 * call. A failed read is not kept, so a retry reads the contexts again.
+	 * @return the batched read of the context, or null if it is not read in a batch
+	 */
+	private Response<GetValue> getBatchedFileValue(String context) {
+		if (this.txnReader == null) {
+			return null;
+		}
+		Map<String, Response<GetValue>> values;
+		synchronized (this.prefetched) {
+			if (this.filesValues == null) {
+				List<String> contexts = new ArrayList<>(this.batchContexts);
+				if (!contexts.contains(context)) {
+					contexts.add(context);
+				}
+				this.filesValues = this.txnReader.getValues(contexts, this.properties.getAclToken(),
+						this.properties.getMaxStaleness());
+			}
+			values = this.filesValues;
+		}
+		return values.get(context);
+	}
+
+	/**
+	 * Looks the context up in a keys only listing of its parent folder. Each folder is
+	 * listed once per load.
+	 * @return the index of the listing if the context does not exist, or null if it
+	 * exists or its existence is unknown
+	 */
+	private Long getMissingContextIndex(String context, ConsulClient consul) {
+		if (!this.properties.isSkipMissingContexts() || this.properties.getLoadStrategy() == PREFIX) {
+			return null;
+		}
+		String path = context.endsWith("/") ? context.substring(0, context.length() - 1) : context;
+		String folder = path.substring(0, path.lastIndexOf('/') + 1);
+		Response<List<String>> response;
+		try {
+			response = this.folderKeys.computeIfAbsent(folder,
+					key -> StaleReads.read(this.properties.getMaxStaleness(),
+							params -> consul.getKVKeysOnly(key, "/", this.properties.getAclToken(), params)));
+		}
+		catch (Exception e) {
+			if (log.isDebugEnabled()) {
+				log.debug("Unable to list consul keys of " + folder, e);
+			}
+			return null;
+		}
+		List<String> keys = response.getValue() != null ? response.getValue() : Collections.emptyList();
+		if (keys.contains(path) || keys.contains(path + "/")) {
+			return null;
+		}
+		return response.getConsulIndex();
+	}
+
+	private ConsulPropertySource createFromPrefix(String context, String prefix, ConsulClient consul,
+			BiConsumer<String, Long> indexConsumer, StartupStep step) {
+		// read every prefix once per load, a failed read is not kept so a retry reads
+		// it again
+		Response<List<GetValue>> response = this.prefixValues.computeIfAbsent(prefix,
+				key -> StaleReads.read(this.properties.getMaxStaleness(),
+						params -> consul.getKVValues(key + "/", this.properties.getAclToken(), params)));
+		indexConsumer.accept(context, response.getConsulIndex());
+
+		String normalized = (properties.getFormat() == FILES || context.endsWith("/")) ? context : context + "/";
+		List<GetValue> values = new ArrayList<>();
+		if (response.getValue() != null) {
+			for (GetValue value : response.getValue()) {
+				if (belongsToContext(value.getKey(), normalized, this.properties)) {
+					values.add(value);
+				}
+			}
+		}
+		step.tag("prefix", prefix);
+		tagRead(step, response.getConsulIndex(), values.isEmpty() ? null : values);
+		saveValues(context, response.getConsulIndex(), values);
+
+		long start = System.nanoTime();
+		try {
+			if (properties.getFormat() == FILES) {
+				if (values.isEmpty()) {
+					return null;
+				}
+				ConsulFilesPropertySource filesPropertySource = new ConsulFilesPropertySource(context, consul,
+						this.properties);
+				filesPropertySource.init(values.get(0));
+				return filesPropertySource;
+			}
+			ConsulPropertySource propertySource = new ConsulPropertySource(context, consul, this.properties);
+			propertySource.init(values, response.getConsulIndex());
+			return propertySource;
+		}
+		finally {
+			tagParse(step, start);
+		}
+	}
+
+	/**
+	 * @param key a consul key
+	 * @param context a context, ending with a slash unless the format is FILES
+	 * @param properties the config properties
+	 * @return true if the key is read as part of the context
+	 */
+	static boolean belongsToContext(String key, String context, ConsulConfigProperties properties) {
+		if (key == null) {
+			return false;
+		}
+		switch (properties.getFormat()) {
+		case FILES:
+			return key.equals(context);
+		case PROPERTIES:
+		case YAML:
+			return key.equals(context + properties.getDataKey());
+		default:
+			return key.startsWith(context) && !key.endsWith("/");
+		}
+	}
+
 	private ConsulPropertySource create(String context, ConsulClient consulClient,
-			BiConsumer<String, Long> indexConsumer) {
+			BiConsumer<String, Long> indexConsumer, StartupStep step) {
 		ConsulPropertySource propertySource = new ConsulPropertySource(context, consulClient, this.properties);
-		propertySource.init();
+		// read the values here, rather than in the deprecated init(), to record them
+		String normalized = context.endsWith("/") ? context : context + "/";
+		Response<List<GetValue>> response = StaleReads.read(this.properties.getMaxStaleness(),
+				params -> consulClient.getKVValues(normalized, this.properties.getAclToken(), params));
+		tagRead(step, response.getConsulIndex(), response.getValue());
+		saveValues(context, response.getConsulIndex(), response.getValue());
+		long start = System.nanoTime();
+		propertySource.init(response.getValue(), response.getConsulIndex());
+		tagParse(step, start);
 		indexConsumer.accept(context, propertySource.getInitialIndex());
 		return propertySource;
 	}
 
+	/**
+	 * Tags a load step with the outcome of a read. Consul answers 404 for a missing key,
+	 * which the client returns as a null value.
+	 */
+	private static void tagRead(StartupStep step, Long index, List<GetValue> values) {
+		step.tag("status", (values != null) ? "200" : "404");
+		step.tag("index", String.valueOf(index));
+		long bytes = 0;
+		if (values != null) {
+			for (GetValue value : values) {
+				bytes += (value.getKey() != null) ? value.getKey().length() : 0;
+				bytes += (value.getValue() != null) ? value.getValue().length() : 0;
+			}
+		}
+		step.tag("bytes", String.valueOf(bytes));
+	}
+
+	private static void tagParse(StartupStep step, long start) {
+		step.tag("parse.micros", String.valueOf((System.nanoTime() - start) / 1000));
+	}
+
+	private void saveValues(String context, Long index, List<GetValue> values) {
+		this.loadedValues.put(context, (values != null) ? values : Collections.emptyList());
+		if (this.snapshot != null) {
+			this.snapshot.put(context, index, values);
+		}
+	}
+
+	private ConsulPropertySource loadFromSnapshot(String context, ConsulConfigSnapshot.Entry entry,
+			ConsulClient consul, BiConsumer<String, Long> indexConsumer, StartupStep step) {
+		// the watch reads the context from consul again if it changed since the index
+		indexConsumer.accept(context, entry.getIndex());
+		this.loadedValues.put(context, entry.getValues());
+		step.tag("source", "snapshot");
+		if (properties.getFormat() == FILES) {
+			if (entry.getValues().isEmpty()) {
+				return null;
+			}
+			ConsulFilesPropertySource filesPropertySource = new ConsulFilesPropertySource(context, consul,
+					this.properties);
+			filesPropertySource.init(entry.getValues().get(0));
+			return filesPropertySource;
+		}
+		ConsulPropertySource propertySource = new ConsulPropertySource(context, consul, this.properties);
+		propertySource.init(entry.getValues(), entry.getIndex());
+		return propertySource;
+	}
+
+	/**
+	 * The outcome of a prefetched load, applied once the context is requested.
+	 */
+	private static class LoadResult {
+
+		private final Map<String, Long> indexes = new LinkedHashMap<>();
+
+		private ConsulPropertySource propertySource;
+
+		void addIndex(String context, Long index) {
+			this.indexes.put(context, index);
+		}
+
+		ConsulPropertySource apply(BiConsumer<String, Long> indexConsumer) {
+			this.indexes.forEach(indexConsumer);
+			return this.propertySource;
+		}
+
+	}
+
 	public static class Context {
 
 		private final String path;
@@ -57,8 +57,9 @@ public class ConsulRetryBootstrapper implements Bootstrapper {
 		registry.registerIfAbsent(LoaderInterceptor.class, context -> {
 			RetryTemplate retryTemplate = context.get(RetryTemplate.class);
 			if (retryTemplate != null) {
-				return loadContext -> retryTemplate.execute(retryContext -> loadContext.getInvocation()
-						.apply(loadContext.getLoaderContext(), loadContext.getResource()));
+				// one circuit for all resources, so they don't each retry in turn
+				return new ConsulRetryCircuit(retryTemplate,
+						ConsulConfigDataLocationResolver.getApplicationStartup(context));
 			}
 			// disabled
 			return null;
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.boot.context.config.ConfigData;
+import org.springframework.cloud.consul.config.ConsulBootstrapper.LoadContext;
+import org.springframework.cloud.consul.config.ConsulBootstrapper.LoaderInterceptor;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.retry.support.RetryTemplate;
+
+/**
+ * Retries the loads of all config data resources of a bootstrap with a shared state. A
+ * load that fails is retried with the retry template, and loads of other resources wait
+ * for it. Once the retries are used up the circuit is open: every following load gets a
+ * single attempt instead of retrying again, until one of them succeeds.
+ */
+class ConsulRetryCircuit implements LoaderInterceptor {
+
+	private static final Log log = LogFactory.getLog(ConsulRetryCircuit.class);
+
+	private final RetryTemplate retryTemplate;
+
+	private final ApplicationStartup applicationStartup;
+
+	private boolean open;
+
+	ConsulRetryCircuit(RetryTemplate retryTemplate) {
+		this(retryTemplate, ApplicationStartup.DEFAULT);
+	}
+
+	ConsulRetryCircuit(RetryTemplate retryTemplate, ApplicationStartup applicationStartup) {
+		this.retryTemplate = retryTemplate;
+		this.applicationStartup = applicationStartup;
+	}
+
+	@Override
+	public synchronized ConfigData apply(LoadContext loadContext) {
+		if (this.open) {
+			if (log.isDebugEnabled()) {
+				log.debug("Retries of consul config were used up, loading " + loadContext.getResource() + " once");
+			}
+			ConfigData configData = invoke(loadContext);
+			this.open = false;
+			return configData;
+		}
+		try {
+			return this.retryTemplate.execute(retryContext -> {
+				if (retryContext.getRetryCount() == 0) {
+					return invoke(loadContext);
+				}
+				// the load steps of a retry are recorded below it
+				StartupStep step = this.applicationStartup.start("spring.cloud.consul.config.retry");
+				step.tag("resource", String.valueOf(loadContext.getResource()));
+				step.tag("attempt", String.valueOf(retryContext.getRetryCount() + 1));
+				try {
+					return invoke(loadContext);
+				}
+				catch (RuntimeException e) {
+					step.tag("exception", e.getClass().getName());
+					throw e;
+				}
+				finally {
+					step.end();
+				}
+			});
+		}
+		catch (RuntimeException e) {
+			this.open = true;
+			throw e;
+		}
+	}
+
+	boolean isOpen() {
+		return this.open;
+	}
+
+	private ConfigData invoke(LoadContext loadContext) {
+		return loadContext.getInvocation().apply(loadContext.getLoaderContext(), loadContext.getResource());
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ecwid.consul.SingleUrlParameters;
+import com.ecwid.consul.UrlParameters;
+import com.ecwid.consul.json.GsonFactory;
+import com.ecwid.consul.transport.HttpResponse;
+import com.ecwid.consul.v1.ConsulRawClient;
+import com.ecwid.consul.v1.OperationException;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.springframework.cloud.consul.StaleReads;
+import org.springframework.util.StringUtils;
+
+/**
+ * Reads many keys with few requests using the consul transaction endpoint
+ * ({@code /v1/txn}). The keys of one transaction are read at a single consistent index.
+ */
+public class ConsulTxnKeyValueReader {
+
+	/**
+	 * The maximum number of operations of a single transaction accepted by consul.
+	 */
+	static final int MAX_OPERATIONS = 64;
+
+	private final ConsulRawClient rawClient;
+
+	public ConsulTxnKeyValueReader(ConsulRawClient rawClient) {
+		this.rawClient = rawClient;
+	}
+
+	/**
+	 * Reads the given keys.
+	 * @param keys the keys to read
+	 * @param token the ACL token, may be null
+	 * @param maxStaleness the max staleness of a transaction served by any server, null to
+	 * only read from the leader
+	 * @return the value of every key, null if the key does not exist, with the index of
+	 * the transaction that read it
+	 */
+	public Map<String, Response<GetValue>> getValues(List<String> keys, String token, Duration maxStaleness) {
+		Map<String, Response<GetValue>> values = new LinkedHashMap<>();
+		for (int start = 0; start < keys.size(); start += MAX_OPERATIONS) {
+			List<String> batch = keys.subList(start, Math.min(keys.size(), start + MAX_OPERATIONS));
+			Response<Map<String, GetValue>> response = StaleReads.read(maxStaleness,
+					params -> readBatch(batch, token, params));
+			for (String key : batch) {
+				// a tree read also returns longer keys starting with the key
+				values.put(key, new Response<>(response.getValue().get(key), response.getConsulIndex(),
+						response.isConsulKnownLeader(), response.getConsulLastContact()));
+			}
+		}
+		return values;
+	}
+
+	private Response<Map<String, GetValue>> readBatch(List<String> keys, String token, QueryParams queryParams) {
+		// "get" fails the whole transaction on a missing key, "get-tree" returns nothing
+		List<Map<String, Object>> operations = new ArrayList<>();
+		for (String key : keys) {
+			Map<String, Object> kv = new LinkedHashMap<>();
+			kv.put("Verb", "get-tree");
+			kv.put("Key", key);
+			operations.add(Collections.singletonMap("KV", kv));
+		}
+		UrlParameters tokenParameter = StringUtils.hasText(token) ? new SingleUrlParameters("token", token) : null;
+		HttpResponse httpResponse = this.rawClient.makePutRequest("/v1/txn",
+				GsonFactory.getGson().toJson(operations), tokenParameter, queryParams);
+		if (httpResponse.getStatusCode() != 200) {
+			throw new OperationException(httpResponse);
+		}
+
+		Map<String, GetValue> found = new LinkedHashMap<>();
+		JsonObject content = GsonFactory.getGson().fromJson(httpResponse.getContent(), JsonObject.class);
+		// a transaction without any existing key has "Results": null
+		if (content != null && content.has("Results") && content.get("Results").isJsonArray()) {
+			for (JsonElement result : content.getAsJsonArray("Results")) {
+				GetValue value = GsonFactory.getGson().fromJson(result.getAsJsonObject().get("KV"), GetValue.class);
+				found.put(value.getKey(), value);
+			}
+		}
+		return new Response<>(found, httpResponse);
+	}
+
+}
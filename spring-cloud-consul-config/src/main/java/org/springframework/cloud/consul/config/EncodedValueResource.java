@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A resource reading the Base64 encoded value of a consul key. The value is decoded
+ * while it is read, without creating a decoded copy of the whole value.
+ */
+class EncodedValueResource extends AbstractResource {
+
+	private final String key;
+
+	private final String encodedValue;
+
+	EncodedValueResource(String key, String encodedValue) {
+		this.key = key;
+		this.encodedValue = encodedValue;
+	}
+
+	@Override
+	public boolean exists() {
+		return true;
+	}
+
+	@Override
+	public long contentLength() {
+		// ignores padding, only used as a hint
+		return this.encodedValue.length() / 4 * 3;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return Base64.getDecoder().wrap(new CharSequenceInputStream(this.encodedValue));
+	}
+
+	@Override
+	public String getDescription() {
+		return "consul key [" + this.key + "]";
+	}
+
+	/**
+	 * Reads the characters of a sequence of ASCII characters as bytes.
+	 */
+	private static class CharSequenceInputStream extends InputStream {
+
+		private final CharSequence chars;
+
+		private int position;
+
+		CharSequenceInputStream(CharSequence chars) {
+			this.chars = chars;
+		}
+
+		@Override
+		public int read() {
+			return (this.position < this.chars.length()) ? this.chars.charAt(this.position++) & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			int available = this.chars.length() - this.position;
+			if (available <= 0) {
+				return -1;
+			}
+			int count = Math.min(len, available);
+			for (int i = 0; i < count; i++) {
+				b[off + i] = (byte) this.chars.charAt(this.position++);
+			}
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.chars.length() - this.position;
+		}
+
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link ConfigWatchMetrics} recorded to a Micrometer {@link MeterRegistry}, tagged with
+ * the watched context or prefix.
+ */
+public class MicrometerConfigWatchMetrics implements ConfigWatchMetrics {
+
+	private static final String PREFIX = "consul.config.watch";
+
+	private static final String TAG = "context";
+
+	private final MeterRegistry registry;
+
+	private final Map<String, WatchMeters> watchMeters = new ConcurrentHashMap<>();
+
+	private final Map<String, ContextMeters> contextMeters = new ConcurrentHashMap<>();
+
+	public MicrometerConfigWatchMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void watchStarted(String context) {
+		getContextMeters(context);
+	}
+
+	@Override
+	public void queryCompleted(String watch, long durationNanos, boolean indexChanged) {
+		WatchMeters meters = getWatchMeters(watch);
+		meters.query.record(durationNanos, TimeUnit.NANOSECONDS);
+		if (!indexChanged) {
+			meters.timeouts.increment();
+		}
+	}
+
+	@Override
+	public void queryFailed(String watch) {
+		getWatchMeters(watch).errors.increment();
+	}
+
+	@Override
+	public void indexChanged(String context, long index) {
+		ContextMeters meters = getContextMeters(context);
+		meters.index = index;
+		meters.lastChange = System.currentTimeMillis();
+	}
+
+	@Override
+	public void refreshPublished(String context, long latencyNanos) {
+		ContextMeters meters = getContextMeters(context);
+		meters.refreshes.increment();
+		meters.refreshLatency.record(latencyNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private WatchMeters getWatchMeters(String watch) {
+		return this.watchMeters.computeIfAbsent(watch, key -> new WatchMeters(this.registry, key));
+	}
+
+	private ContextMeters getContextMeters(String context) {
+		return this.contextMeters.computeIfAbsent(context, key -> new ContextMeters(this.registry, key));
+	}
+
+	private static class WatchMeters {
+
+		private final Timer query;
+
+		private final Counter timeouts;
+
+		private final Counter errors;
+
+		WatchMeters(MeterRegistry registry, String watch) {
+			this.query = Timer.builder(PREFIX + ".query").description("Duration of the blocking queries")
+					.tag(TAG, watch).register(registry);
+			this.timeouts = Counter.builder(PREFIX + ".timeouts")
+					.description("Blocking queries that returned without a new index").tag(TAG, watch)
+					.register(registry);
+			this.errors = Counter.builder(PREFIX + ".errors").description("Failed blocking queries").tag(TAG, watch)
+					.register(registry);
+		}
+
+	}
+
+	private static class ContextMeters {
+
+		private final Counter refreshes;
+
+		private final Timer refreshLatency;
+
+		/**
+		 * The time of the last index change, or 0 before the first change.
+		 */
+		private volatile long lastChange;
+
+		/**
+		 * The last index seen, or -1 before the first change.
+		 */
+		private volatile long index = -1;
+
+		ContextMeters(MeterRegistry registry, String context) {
+			this.refreshes = Counter.builder(PREFIX + ".refreshes").description("Published refreshes")
+					.tag(TAG, context).register(registry);
+			this.refreshLatency = Timer.builder(PREFIX + ".refresh.latency")
+					.description("Time from the detection of a new index to the published refresh").tag(TAG, context)
+					.register(registry);
+			// NaN until the first change, starting the watch is not a change
+			Gauge.builder(PREFIX + ".last.change", this, m -> (m.lastChange != 0) ? m.lastChange / 1000.0 : Double.NaN)
+					.description("Time of the last index change in seconds since the epoch").tag(TAG, context)
+					.baseUnit("seconds").register(registry);
+			Gauge.builder(PREFIX + ".index.age", this,
+					m -> (m.lastChange != 0) ? (System.currentTimeMillis() - m.lastChange) / 1000.0 : Double.NaN)
+					.description("Time since the last index change").tag(TAG, context).baseUnit("seconds")
+					.register(registry);
+			Gauge.builder(PREFIX + ".index", this, m -> (m.index >= 0) ? m.index : Double.NaN)
+					.description("The last consul index of a change").tag(TAG, context).register(registry);
+		}
+
+	}
+
+}
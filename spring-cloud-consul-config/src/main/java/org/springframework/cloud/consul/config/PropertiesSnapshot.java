@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable copy of the properties of a {@link ConsulPropertySource}. Names are kept
+ * in an array that is handed out as is, values are looked up in an open addressing table,
+ * so reads don't allocate.
+ */
+final class PropertiesSnapshot {
+
+	private static final int NOT_FOUND = -1;
+
+	private final String[] names;
+
+	private final Object[] values;
+
+	/**
+	 * Slots of the open addressing table, holding the index of a name plus one, or 0 for
+	 * an empty slot.
+	 */
+	private final int[] table;
+
+	private final long version;
+
+	/**
+	 * Creates the first snapshot of the given properties.
+	 * @param properties the properties to copy
+	 */
+	PropertiesSnapshot(Map<String, Object> properties) {
+		this(properties, null);
+	}
+
+	/**
+	 * Creates a snapshot of the given properties following the given one. The names array
+	 * of the previous snapshot is kept if the names didn't change, so callers caching
+	 * data per names array can tell that by identity.
+	 * @param properties the properties to copy
+	 * @param previous the previous snapshot, may be null
+	 */
+	PropertiesSnapshot(Map<String, Object> properties, PropertiesSnapshot previous) {
+		String[] names = new String[properties.size()];
+		this.values = new Object[properties.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> entry : properties.entrySet()) {
+			names[i] = entry.getKey();
+			this.values[i] = entry.getValue();
+			i++;
+		}
+		this.names = (previous != null && Arrays.equals(previous.names, names)) ? previous.names : names;
+		this.version = (previous != null) ? previous.version + 1 : 1;
+
+		// at most half full, so probe sequences stay short
+		int capacity = Integer.highestOneBit(Math.max(names.length, 1) * 2) * 2;
+		this.table = new int[capacity];
+		for (int index = 0; index < names.length; index++) {
+			int slot = hash(names[index]) & (capacity - 1);
+			while (this.table[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			this.table[slot] = index + 1;
+		}
+	}
+
+	String[] getNames() {
+		return this.names;
+	}
+
+	long getVersion() {
+		return this.version;
+	}
+
+	boolean contains(String name) {
+		return indexOf(name) != NOT_FOUND;
+	}
+
+	Object get(String name) {
+		int index = indexOf(name);
+		return (index != NOT_FOUND) ? this.values[index] : null;
+	}
+
+	private int indexOf(String name) {
+		if (name == null) {
+			return NOT_FOUND;
+		}
+		int mask = this.table.length - 1;
+		int slot = hash(name) & mask;
+		int entry;
+		while ((entry = this.table[slot]) != 0) {
+			if (name.equals(this.names[entry - 1])) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+}
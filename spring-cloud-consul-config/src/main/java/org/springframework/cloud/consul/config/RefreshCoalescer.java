@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Collects items that arrive in bursts and hands them over together once no new item
+ * arrived for a quiet period, or at the latest after a maximum delay since the first
+ * pending item.
+ *
+ * @param <T> the type of the collected items
+ */
+class RefreshCoalescer<T> {
+
+	private final TaskScheduler taskScheduler;
+
+	private final long quietPeriod;
+
+	private final long maxDelay;
+
+	private final Consumer<List<T>> consumer;
+
+	private List<T> pending = new ArrayList<>();
+
+	private long firstPendingAt;
+
+	private ScheduledFuture<?> flushFuture;
+
+	RefreshCoalescer(TaskScheduler taskScheduler, long quietPeriod, long maxDelay, Consumer<List<T>> consumer) {
+		this.taskScheduler = taskScheduler;
+		this.quietPeriod = quietPeriod;
+		this.maxDelay = Math.max(quietPeriod, maxDelay);
+		this.consumer = consumer;
+	}
+
+	synchronized void add(T item) {
+		long now = System.currentTimeMillis();
+		if (this.pending.isEmpty()) {
+			this.firstPendingAt = now;
+		}
+		this.pending.add(item);
+		if (this.flushFuture != null) {
+			this.flushFuture.cancel(false);
+		}
+		long flushAt = Math.min(now + this.quietPeriod, this.firstPendingAt + this.maxDelay);
+		this.flushFuture = this.taskScheduler.schedule(this::flush, Instant.ofEpochMilli(flushAt));
+	}
+
+	void flush() {
+		List<T> items;
+		synchronized (this) {
+			items = this.pending;
+			this.pending = new ArrayList<>();
+			this.flushFuture = null;
+		}
+		if (!items.isEmpty()) {
+			this.consumer.accept(items);
+		}
+	}
+
+	synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Hands items over to a consumer on an executor, one batch at a time. Items arriving
+ * while the consumer runs are merged by key into the next batch, so callers never wait
+ * and at most one pending item is kept per key.
+ *
+ * @param <K> the type of the keys items are merged by
+ * @param <T> the type of the items
+ */
+class RefreshDispatcher<K, T> {
+
+	private static final Log log = LogFactory.getLog(RefreshDispatcher.class);
+
+	private final Executor executor;
+
+	private final Function<T, K> keyFunction;
+
+	private final BinaryOperator<T> mergeFunction;
+
+	private final Consumer<List<T>> consumer;
+
+	private Map<K, T> pending = new LinkedHashMap<>();
+
+	private boolean draining;
+
+	RefreshDispatcher(Executor executor, Function<T, K> keyFunction, BinaryOperator<T> mergeFunction,
+			Consumer<List<T>> consumer) {
+		this.executor = executor;
+		this.keyFunction = keyFunction;
+		this.mergeFunction = mergeFunction;
+		this.consumer = consumer;
+	}
+
+	synchronized void dispatch(List<T> items) {
+		for (T item : items) {
+			this.pending.merge(this.keyFunction.apply(item), item, this.mergeFunction);
+		}
+		if (!this.draining) {
+			try {
+				this.executor.execute(this::drain);
+				this.draining = true;
+			}
+			catch (RejectedExecutionException e) {
+				log.warn("Unable to dispatch refresh, the dispatcher is shut down", e);
+			}
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			List<T> items;
+			synchronized (this) {
+				if (this.pending.isEmpty()) {
+					this.draining = false;
+					return;
+				}
+				items = new ArrayList<>(this.pending.values());
+				this.pending = new LinkedHashMap<>();
+			}
+			try {
+				this.consumer.accept(items);
+			}
+			catch (RuntimeException e) {
+				log.warn("Error dispatching refresh", e);
+			}
+		}
+	}
+
+	synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+}
@@ -16,24 +16,35 @@
 
 package org.springframework.cloud.consul.config;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.ecwid.consul.v1.ConsistencyMode;
 import com.ecwid.consul.v1.ConsulClient;
 import com.ecwid.consul.v1.QueryParams;
 import com.ecwid.consul.v1.Response;
 import com.ecwid.consul.v1.kv.model.GetValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.cloud.endpoint.event.RefreshEvent;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.StringUtils;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.atLeastOnce;
@@ -43,6 +54,8 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.FILES;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Watch.Strategy.PREFIX;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Watch.Strategy.SENTINEL;
 
 /**
  * @author Spencer Gibb
@@ -142,4 +155,432 @@ public class ConfigWatchTests {
 		verify(eventPublisher, times(0)).publishEvent(any(RefreshEvent.class));
 	}
 
+	@Test
+	public void concurrentWatchSchedulesOneTaskPerContext() {
+		this.configProperties.getWatch().setConcurrency(4);
+		TaskScheduler taskScheduler = mock(TaskScheduler.class);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put("/app/", 1L);
+		initialIndexes.put("/app,dev/", 1L);
+		initialIndexes.put("/application/", 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, mock(ConsulClient.class), initialIndexes,
+				taskScheduler);
+		watch.start();
+
+		verify(taskScheduler, times(3)).scheduleWithFixedDelay(any(Runnable.class), anyLong());
+		watch.stop();
+	}
+
+	@Test
+	public void prefixWatchPublishesEventForChangedContextOnly() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setStrategy(PREFIX);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		List<GetValue> getValues = Arrays.asList(getValue("config/app/foo", 10L), getValue("config/application/bar", 3L),
+				getValue("config/otherapp/baz", 4L));
+		Response<List<GetValue>> response = new Response<>(getValues, 10L, false, 1L);
+		when(consul.getKVValues(eq("config/"), nullable(String.class), any(QueryParams.class))).thenReturn(response);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put("config/app/", 5L);
+		initialIndexes.put("config/application/", 5L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+
+		ArgumentCaptor<RefreshEvent> event = ArgumentCaptor.forClass(RefreshEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertThat(event.getValue().getEvent())
+				.isEqualTo(new ConfigWatch.RefreshEventData("config/app/", 5L, 10L));
+	}
+
+	@Test
+	public void watchPublishesChangedKeys() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		Response<List<GetValue>> first = new Response<>(
+				Arrays.asList(getValue("config/app/a", 2L, "MQ=="), getValue("config/app/b", 1L, "MQ==")), 2L, false,
+				1L);
+		Response<List<GetValue>> second = new Response<>(
+				Arrays.asList(getValue("config/app/a", 3L, "Mg=="), getValue("config/app/c", 3L, "MQ==")), 3L, false,
+				1L);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenReturn(first)
+				.thenReturn(second);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		watch.watchConfigKeyValues();
+
+		ArgumentCaptor<RefreshEvent> event = ArgumentCaptor.forClass(RefreshEvent.class);
+		verify(eventPublisher, times(2)).publishEvent(event.capture());
+		ConfigWatch.RefreshEventData data = (ConfigWatch.RefreshEventData) event.getAllValues().get(1).getEvent();
+		assertThat(data.getAddedKeys()).containsExactly("config/app/c");
+		assertThat(data.getChangedKeys()).containsExactly("config/app/a");
+		assertThat(data.getRemovedKeys()).containsExactly("config/app/b");
+	}
+
+	@Test
+	public void watchDoesNotPublishEventWhenValuesDidNotChange() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		Response<List<GetValue>> first = new Response<>(Arrays.asList(getValue("config/app/a", 2L, "MQ==")), 2L,
+				false, 1L);
+		// same value written again, plus a folder key that is not a property
+		Response<List<GetValue>> second = new Response<>(
+				Arrays.asList(getValue("config/app/a", 3L, "MQ=="), getValue("config/app/b/", 4L, null)), 4L, false,
+				1L);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenReturn(first)
+				.thenReturn(second);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		watch.watchConfigKeyValues();
+
+		verify(eventPublisher, times(1)).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void watchDoesNotPublishEventWhenValuesDidNotChangeSinceLoad() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		// the index moved because of another context, the values are the loaded ones
+		Response<List<GetValue>> first = new Response<>(Arrays.asList(getValue("config/app/a", 1L, "MQ==")), 2L,
+				false, 1L);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenReturn(first);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		Map<String, List<GetValue>> initialValues = new LinkedHashMap<>();
+		initialValues.put(context, Arrays.asList(getValue("config/app/a", 1L, "MQ==")));
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, initialValues,
+				mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+
+		verify(eventPublisher, never()).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void watchUpdatesPropertySourceInPlace() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setUpdateInPlace(true);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		GetValue getValue = getValue("config/app/foo/bar", 2L, "YmF6"); // baz
+		Response<List<GetValue>> response = new Response<>(Collections.singletonList(getValue), 2L, false, 1L);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenReturn(response);
+
+		StaticApplicationContext applicationContext = new StaticApplicationContext();
+		ConsulPropertySource propertySource = new ConsulPropertySource(context, consul, this.configProperties);
+		applicationContext.getEnvironment().getPropertySources().addFirst(propertySource);
+		applicationContext.refresh();
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.setApplicationContext(applicationContext);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+
+		assertThat(applicationContext.getEnvironment().getProperty("foo.bar")).isEqualTo("baz");
+		verify(eventPublisher, times(1)).publishEvent(any(EnvironmentChangeEvent.class));
+		verify(eventPublisher, never()).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void contextsAreNotUpdatedInPlaceWhenBatchNeedsFullRefresh() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setUpdateInPlace(true);
+		this.configProperties.getWatch().setRefreshQuietPeriod(60000);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/a/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/a/foo", 2L, "YmF6")), 2L, false, 1L));
+		when(consul.getKVValues(eq("config/b/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/b/foo", 3L)), 3L, false, 1L));
+
+		// only config/a/ was loaded into the environment
+		StaticApplicationContext applicationContext = new StaticApplicationContext();
+		ConsulPropertySource propertySource = new ConsulPropertySource("config/a/", consul, this.configProperties);
+		applicationContext.getEnvironment().getPropertySources().addFirst(propertySource);
+		applicationContext.refresh();
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put("config/a/", 1L);
+		initialIndexes.put("config/b/", 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.setApplicationContext(applicationContext);
+		watch.start();
+
+		try {
+			watch.watchConfigKeyValues();
+			watch.flushRefresh();
+		}
+		finally {
+			watch.stop();
+		}
+
+		// the refresh sees the change of config/a/ when it diffs the environment
+		assertThat(applicationContext.getEnvironment().getProperty("foo")).isNull();
+		ArgumentCaptor<RefreshEvent> event = ArgumentCaptor.forClass(RefreshEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		ConfigWatch.RefreshEventData data = (ConfigWatch.RefreshEventData) event.getValue().getEvent();
+		assertThat(data.getContexts()).containsExactly("config/a/", "config/b/");
+		verify(eventPublisher, never()).publishEvent(any(EnvironmentChangeEvent.class));
+	}
+
+	@Test
+	public void changesWithinQuietPeriodPublishSingleEvent() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setRefreshQuietPeriod(60000);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/a/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/a/foo", 2L)), 2L, false, 1L));
+		when(consul.getKVValues(eq("config/b/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/b/foo", 3L)), 3L, false, 1L));
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put("config/a/", 1L);
+		initialIndexes.put("config/b/", 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		try {
+			watch.watchConfigKeyValues();
+			verify(eventPublisher, never()).publishEvent(any());
+
+			watch.flushRefresh();
+		}
+		finally {
+			watch.stop();
+		}
+
+		ArgumentCaptor<RefreshEvent> event = ArgumentCaptor.forClass(RefreshEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		ConfigWatch.RefreshEventData data = (ConfigWatch.RefreshEventData) event.getValue().getEvent();
+		assertThat(data.getContexts()).containsExactly("config/a/", "config/b/");
+		assertThat(data.getPrevIndex()).isEqualTo(1L);
+		assertThat(data.getNewIndex()).isEqualTo(3L);
+	}
+
+	@Test
+	public void changeDetectedAfterStopIsNotPublished() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setRefreshQuietPeriod(60000);
+		String context = "config/app/";
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConsulClient consul = mock(ConsulClient.class);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		// the watch is stopped while the query is in flight
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenAnswer(invocation -> {
+			watch.stop();
+			return new Response<>(Collections.singletonList(getValue("config/app/foo", 2L)), 2L, false, 1L);
+		});
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		watch.flushRefresh();
+
+		verify(eventPublisher, never()).publishEvent(any());
+	}
+
+	@Test
+	public void failingWatchBacksOff() {
+		this.configProperties.setFailFast(false);
+		this.configProperties.getWatch().getBackoff().setInitialInterval(60000);
+		String context = "/config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class)))
+				.thenThrow(new RuntimeException("agent down"));
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(mock(ApplicationEventPublisher.class));
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		watch.watchConfigKeyValues();
+
+		verify(consul, times(1)).getKVValues(eq(context), nullable(String.class), any(QueryParams.class));
+		assertThat(watch.getBackoffs().get(context).getFailures()).isEqualTo(1);
+	}
+
+	@Test
+	public void watchRecordsMetrics() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		Response<List<GetValue>> unchanged = new Response<>(Collections.singletonList(getValue("config/app/a", 1L)),
+				1L, false, 1L);
+		Response<List<GetValue>> changed = new Response<>(
+				Collections.singletonList(getValue("config/app/a", 2L, "Mg==")), 2L, false, 1L);
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class))).thenReturn(unchanged)
+				.thenReturn(changed);
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 1L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		watch.setMetrics(new MicrometerConfigWatchMetrics(registry));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		assertThat(registry.get("consul.config.watch.last.change").tag("context", context).gauge().value()).isNaN();
+		assertThat(registry.get("consul.config.watch.index.age").tag("context", context).gauge().value()).isNaN();
+
+		watch.watchConfigKeyValues();
+		watch.watchConfigKeyValues();
+
+		assertThat(registry.get("consul.config.watch.query").tag("context", context).timer().count()).isEqualTo(2);
+		assertThat(registry.get("consul.config.watch.timeouts").tag("context", context).counter().count())
+				.isEqualTo(1);
+		assertThat(registry.get("consul.config.watch.refreshes").tag("context", context).counter().count())
+				.isEqualTo(1);
+		assertThat(registry.get("consul.config.watch.refresh.latency").tag("context", context).timer().count())
+				.isEqualTo(1);
+		assertThat(registry.get("consul.config.watch.index.age").tag("context", context).gauge().value())
+				.isGreaterThanOrEqualTo(0);
+		assertThat(registry.get("consul.config.watch.last.change").tag("context", context).gauge().value())
+				.isGreaterThan(0);
+		assertThat(registry.get("consul.config.watch.index").tag("context", context).gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	public void sentinelWatchReadsContextOnlyWhenSentinelChanges() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setStrategy(SENTINEL);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValue(eq("config/app/.version"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(getValue("config/app/.version", 4L), 4L, false, 1L))
+				.thenReturn(new Response<>(getValue("config/app/.version", 4L), 9L, false, 1L))
+				.thenReturn(new Response<>(getValue("config/app/.version", 10L), 10L, false, 1L));
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/app/foo", 10L)), 10L, false, 1L));
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 5L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		watch.watchConfigKeyValues();
+		verify(consul, never()).getKVValues(anyString(), nullable(String.class), any(QueryParams.class));
+
+		watch.watchConfigKeyValues();
+		verify(consul, times(1)).getKVValues(eq(context), nullable(String.class), any(QueryParams.class));
+		verify(eventPublisher, times(1)).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void keysOnlyWatchReadsValuesOnlyWhenIndexMoves() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.getWatch().setKeysOnly(true);
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVKeysOnly(eq(context), nullable(String.class), nullable(String.class),
+				any(QueryParams.class)))
+						.thenReturn(new Response<>(Collections.singletonList("config/app/foo"), 5L, false, 1L))
+						.thenReturn(new Response<>(Collections.singletonList("config/app/foo"), 10L, false, 1L));
+		when(consul.getKVValues(eq(context), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/app/foo", 10L)), 10L, false, 1L));
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 5L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+		verify(consul, never()).getKVValues(anyString(), nullable(String.class), any(QueryParams.class));
+
+		watch.watchConfigKeyValues();
+		verify(consul, times(1)).getKVValues(eq(context), nullable(String.class), eq(QueryParams.DEFAULT));
+		verify(eventPublisher, times(1)).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void staleReadOutOfBoundsIsReadAgainFromLeader() {
+		ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+		this.configProperties.setMaxStaleness(Duration.ofMillis(100));
+		String context = "config/app/";
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq(context), nullable(String.class),
+				argThat(params -> params != null && params.getConsistencyMode() == ConsistencyMode.STALE)))
+						.thenReturn(new Response<>(Collections.singletonList(getValue("config/app/foo", 8L)), 8L,
+								false, 500L));
+		when(consul.getKVValues(eq(context), nullable(String.class), eq(QueryParams.DEFAULT))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", 10L)), 10L, true, 0L));
+
+		LinkedHashMap<String, Long> initialIndexes = new LinkedHashMap<>();
+		initialIndexes.put(context, 5L);
+		ConfigWatch watch = new ConfigWatch(this.configProperties, consul, initialIndexes, mock(TaskScheduler.class));
+		watch.setApplicationEventPublisher(eventPublisher);
+		watch.start();
+
+		watch.watchConfigKeyValues();
+
+		verify(consul, times(1)).getKVValues(eq(context), nullable(String.class), eq(QueryParams.DEFAULT));
+		verify(eventPublisher, times(1)).publishEvent(any(RefreshEvent.class));
+	}
+
+	@Test
+	public void commonFolderOfContexts() {
+		assertThat(ConfigWatch.getCommonFolder(Arrays.asList("config/app/", "config/application,dev/")))
+				.isEqualTo("config/");
+		assertThat(ConfigWatch.getCommonFolder(Arrays.asList("config/app.yml", "config/app-dev.yml")))
+				.isEqualTo("config/");
+		assertThat(ConfigWatch.getCommonFolder(Arrays.asList("config/app/"))).isEqualTo("config/app/");
+	}
+
+	private GetValue getValue(String key, long modifyIndex) {
+		return getValue(key, modifyIndex, null);
+	}
+
+	private GetValue getValue(String key, long modifyIndex, String value) {
+		GetValue getValue = new GetValue();
+		getValue.setKey(key);
+		getValue.setModifyIndex(modifyIndex);
+		getValue.setValue(value);
+		return getValue;
+	}
+
 }
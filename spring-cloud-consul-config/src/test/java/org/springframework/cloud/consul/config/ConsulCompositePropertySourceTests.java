@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.core.env.MapPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsulCompositePropertySourceTests {
+
+	@Test
+	public void firstChildWins() {
+		Map<String, Object> app = new HashMap<>();
+		app.put("foo", "app");
+		Map<String, Object> application = new HashMap<>();
+		application.put("foo", "application");
+		application.put("bar", "application");
+
+		ConsulCompositePropertySource composite = new ConsulCompositePropertySource("consul");
+		composite.addPropertySource(new MapPropertySource("config/app/", app));
+		composite.addPropertySource(new MapPropertySource("config/application/", application));
+
+		assertThat(composite.getPropertyNames()).containsExactlyInAnyOrder("foo", "bar");
+		assertThat(composite.getProperty("foo")).isEqualTo("app");
+		assertThat(composite.getProperty("bar")).isEqualTo("application");
+		assertThat(composite.containsProperty("baz")).isFalse();
+		assertThat(composite.getOrigin("foo").toString()).contains("config/app/");
+		assertThat(composite.getOrigin("bar").toString()).contains("config/application/");
+		assertThat(composite.getOrigin("baz")).isNull();
+	}
+
+	@Test
+	public void changedChildrenAreMergedAfterRebuild() {
+		Map<String, Object> app = new HashMap<>();
+		app.put("foo", "bar");
+		ConsulCompositePropertySource composite = new ConsulCompositePropertySource("consul");
+		composite.addPropertySource(new MapPropertySource("config/app/", app));
+		assertThat(composite.getProperty("foo")).isEqualTo("bar");
+
+		app.put("foo", "baz");
+		assertThat(composite.getProperty("foo")).isEqualTo("bar");
+
+		composite.rebuild();
+		assertThat(composite.getProperty("foo")).isEqualTo("baz");
+	}
+
+}
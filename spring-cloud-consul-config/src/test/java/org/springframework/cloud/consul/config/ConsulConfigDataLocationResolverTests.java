@@ -20,6 +20,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.ConsulRawClient;
 import org.apache.commons.logging.LogFactory;
 import org.junit.jupiter.api.Test;
 
@@ -31,6 +33,7 @@ import org.springframework.boot.context.config.Profiles;
 import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.cloud.consul.ConsulProperties;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -81,6 +84,50 @@ public class ConsulConfigDataLocationResolverTests {
 		assertThat(properties.getPort()).isEqualTo(8502);
 	}
 
+	@Test
+	public void batchedReadsShareTheClientTransportAcrossResolves() {
+		ConsulConfigDataLocationResolver resolver = new ConsulConfigDataLocationResolver(LogFactory.getLog(getClass()));
+		DefaultBootstrapContext bootstrapContext = new DefaultBootstrapContext();
+		ConfigDataLocationResolverContext context = mock(ConfigDataLocationResolverContext.class);
+		when(context.getBootstrapContext()).thenReturn(bootstrapContext);
+		MockEnvironment env = new MockEnvironment();
+		env.setProperty("spring.cloud.consul.config.format", "FILES");
+		env.setProperty("spring.cloud.consul.config.batch-file-reads", "true");
+		when(context.getBinder()).thenReturn(Binder.get(env));
+		Profiles profiles = mock(Profiles.class);
+		when(profiles.getAccepted()).thenReturn(Collections.singletonList("dev"));
+
+		resolver.resolveProfileSpecific(context, ConfigDataLocation.of("consul:myhost"), profiles);
+		ConsulTxnKeyValueReader txnReader = bootstrapContext.get(ConsulTxnKeyValueReader.class);
+		resolver.resolveProfileSpecific(context, ConfigDataLocation.of("consul:myhost"), profiles);
+
+		assertThat(bootstrapContext.get(ConsulTxnKeyValueReader.class)).isSameAs(txnReader);
+		ConsulRawClient rawClient = bootstrapContext.get(ConsulRawClient.class);
+		assertThat(ReflectionTestUtils.getField(txnReader, "rawClient")).isSameAs(rawClient);
+		Object catalogClient = ReflectionTestUtils.getField(bootstrapContext.get(ConsulClient.class), "catalogClient");
+		assertThat(ReflectionTestUtils.getField(catalogClient, "rawClient")).isSameAs(rawClient);
+	}
+
+	@Test
+	public void customConsulClientIsNotBypassedByBatchedReads() {
+		ConsulConfigDataLocationResolver resolver = new ConsulConfigDataLocationResolver(LogFactory.getLog(getClass()));
+		DefaultBootstrapContext bootstrapContext = new DefaultBootstrapContext();
+		bootstrapContext.register(ConsulClient.class, InstanceSupplier.of(mock(ConsulClient.class)));
+		ConfigDataLocationResolverContext context = mock(ConfigDataLocationResolverContext.class);
+		when(context.getBootstrapContext()).thenReturn(bootstrapContext);
+		MockEnvironment env = new MockEnvironment();
+		env.setProperty("spring.cloud.consul.config.format", "FILES");
+		env.setProperty("spring.cloud.consul.config.batch-file-reads", "true");
+		when(context.getBinder()).thenReturn(Binder.get(env));
+		Profiles profiles = mock(Profiles.class);
+		when(profiles.getAccepted()).thenReturn(Collections.singletonList("dev"));
+
+		resolver.resolveProfileSpecific(context, ConfigDataLocation.of("consul:myhost"), profiles);
+
+		assertThat(bootstrapContext.isRegistered(ConsulRawClient.class)).isFalse();
+		assertThat(bootstrapContext.isRegistered(ConsulTxnKeyValueReader.class)).isFalse();
+	}
+
 	private List<String> toContexts(List<ConsulConfigDataResource> locations) {
 		return locations.stream().map(ConsulConfigDataResource::getContext).collect(Collectors.toList());
 	}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.core.metrics.StartupStep;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConsulPropertySourcesTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void contextsAreLoadedConcurrently() {
+		List<String> contexts = Arrays.asList("config/app,dev/", "config/app/", "config/application/");
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setLoadConcurrency(contexts.size());
+
+		CountDownLatch latch = new CountDownLatch(contexts.size());
+		AtomicBoolean concurrent = new AtomicBoolean(true);
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(anyString(), nullable(String.class), any(QueryParams.class))).thenAnswer(invocation -> {
+			String context = invocation.getArgument(0);
+			// every load waits for all the others to start
+			latch.countDown();
+			if (!latch.await(5, TimeUnit.SECONDS)) {
+				concurrent.set(false);
+			}
+			return new Response<>(Collections.singletonList(getValue(context + "foo", "YmFy")),
+					(long) context.length(), false, 1L);
+		});
+
+		ConsulPropertySources sources = new ConsulPropertySources(properties, LogFactory.getLog(getClass()));
+		sources.setPrefetchContexts(contexts);
+
+		LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
+		for (String context : contexts) {
+			ConsulPropertySource propertySource = sources.createPropertySource(context, consul, indexes::put);
+			assertThat(propertySource.getName()).isEqualTo(context);
+			assertThat(propertySource.getProperty("foo")).isEqualTo("bar");
+		}
+
+		assertThat(concurrent).isTrue();
+		assertThat(indexes).containsExactly(entry("config/app,dev/", 15L), entry("config/app/", 11L),
+				entry("config/application/", 19L));
+	}
+
+	@Test
+	public void prefixLoadStrategyReadsEachPrefixOnce() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setLoadStrategy(ConsulConfigProperties.LoadStrategy.PREFIX);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		List<GetValue> values = Arrays.asList(getValue("config/app/foo", "YmFy"),
+				getValue("config/app,dev/foo", "YmF6"), getValue("config/application/", null),
+				getValue("config/application/foo/bar", "cXV4"));
+		when(consul.getKVValues(eq("config/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(values, 7L, false, 1L));
+
+		ConsulPropertySources sources = new ConsulPropertySources(properties, LogFactory.getLog(getClass()));
+		LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
+		Map<String, List<GetValue>> loadedValues = new LinkedHashMap<>();
+		ConsulPropertySource app = sources.createPropertySource("config/app/", consul, indexes::put,
+				loadedValues::put);
+		ConsulPropertySource appDev = sources.createPropertySource("config/app,dev/", consul, indexes::put,
+				loadedValues::put);
+		ConsulPropertySource application = sources.createPropertySource("config/application/", consul,
+				indexes::put, loadedValues::put);
+
+		assertThat(loadedValues.get("config/app/")).containsExactly(values.get(0));
+		assertThat(loadedValues.get("config/application/")).containsExactly(values.get(3));
+		assertThat(app.getPropertyNames()).containsExactly("foo");
+		assertThat(app.getProperty("foo")).isEqualTo("bar");
+		assertThat(appDev.getProperty("foo")).isEqualTo("baz");
+		assertThat(application.getPropertyNames()).containsExactly("foo.bar");
+		assertThat(indexes).containsOnlyKeys("config/app/", "config/app,dev/", "config/application/")
+				.containsValue(7L);
+		verify(consul, times(1)).getKVValues(anyString(), nullable(String.class), any(QueryParams.class));
+	}
+
+	@Test
+	public void missingContextsAreSkipped() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setSkipMissingContexts(true);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVKeysOnly(eq("config/"), eq("/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Arrays.asList("config/app/", "config/application.yml"), 5L, false, 1L));
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", "YmFy")), 4L, false, 1L));
+
+		ConsulPropertySources sources = new ConsulPropertySources(properties, LogFactory.getLog(getClass()));
+		LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
+		ConsulPropertySource app = sources.createPropertySource("config/app/", consul, indexes::put);
+		ConsulPropertySource appDev = sources.createPropertySource("config/app,dev/", consul, indexes::put);
+		ConsulPropertySource application = sources.createPropertySource("config/application/", consul,
+				indexes::put);
+
+		assertThat(app.getProperty("foo")).isEqualTo("bar");
+		assertThat(appDev).isNull();
+		assertThat(application).isNull();
+		assertThat(indexes).containsExactly(entry("config/app/", 4L), entry("config/app,dev/", 5L),
+				entry("config/application/", 5L));
+		verify(consul, times(1)).getKVKeysOnly(anyString(), anyString(), nullable(String.class),
+				any(QueryParams.class));
+		verify(consul, times(1)).getKVValues(anyString(), nullable(String.class), any(QueryParams.class));
+	}
+
+	@Test
+	public void loadsAreRecordedAsStartupSteps() {
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", "YmFy")), 4L, false, 1L));
+		when(consul.getKVValues(eq("config/application/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(null, 5L, false, 1L));
+
+		BufferingApplicationStartup startup = new BufferingApplicationStartup(10);
+		ConsulPropertySources sources = new ConsulPropertySources(new ConsulConfigProperties(),
+				LogFactory.getLog(getClass()));
+		sources.setApplicationStartup(startup);
+		sources.createPropertySource("config/app/", consul, (context, index) -> {
+		});
+		sources.createPropertySource("config/application/", consul, (context, index) -> {
+		});
+
+		List<TimelineEvent> events = startup.getBufferedTimeline().getEvents();
+		assertThat(events).extracting(event -> event.getStartupStep().getName())
+				.containsExactly("spring.cloud.consul.config.load", "spring.cloud.consul.config.load");
+		assertThat(tags(events.get(0))).containsEntry("context", "config/app/").containsEntry("status", "200")
+				.containsEntry("index", "4").containsEntry("bytes", "18").containsKey("parse.micros");
+		assertThat(tags(events.get(1))).containsEntry("context", "config/application/")
+				.containsEntry("status", "404").containsEntry("bytes", "0");
+	}
+
+	private static Map<String, String> tags(TimelineEvent event) {
+		Map<String, String> tags = new LinkedHashMap<>();
+		for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+			tags.put(tag.getKey(), tag.getValue());
+		}
+		return tags;
+	}
+
+	@Test
+	public void valuesAreParsedOnFirstRead() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setFormat(ConsulConfigProperties.Format.YAML);
+		properties.setLazyParsing(true);
+
+		ConsulClient consul = mock(ConsulClient.class);
+		// "foo: bar" and "foo: [" (not valid YAML)
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/data", "Zm9vOiBiYXI=")), 4L, false, 1L));
+		when(consul.getKVValues(eq("config/broken/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Collections.singletonList(getValue("config/broken/data", "Zm9vOiBb")), 5L,
+						false, 1L));
+
+		ConsulPropertySources sources = new ConsulPropertySources(properties, LogFactory.getLog(getClass()));
+		ConsulPropertySource app = sources.createPropertySource("config/app/", consul, (context, index) -> {
+		});
+		ConsulPropertySource broken = sources.createPropertySource("config/broken/", consul, (context, index) -> {
+		});
+
+		assertThat(app.getPropertyNames()).containsExactly("foo");
+		assertThat(app.getProperty("foo")).isEqualTo("bar");
+		assertThat(broken).isNotNull();
+		assertThatThrownBy(() -> broken.getProperty("foo")).isInstanceOf(RuntimeException.class);
+	}
+
+	@Test
+	public void contextIsOnlyStrippedFromTheStartOfKeys() {
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class)))
+				.thenReturn(new Response<>(Arrays.asList(getValue("config/app/foo", "YmFy"),
+						getValue("config/app/nested/config/app/foo", "YmF6")), 4L, false, 1L));
+
+		ConsulPropertySources sources = new ConsulPropertySources(new ConsulConfigProperties(),
+				LogFactory.getLog(getClass()));
+		ConsulPropertySource app = sources.createPropertySource("config/app/", consul, (context, index) -> {
+		});
+
+		assertThat(app.getPropertyNames()).containsExactly("foo", "nested.config.app.foo");
+		assertThat(app.getProperty("nested.config.app.foo")).isEqualTo("baz");
+	}
+
+	@Test
+	public void contextsAreLoadedFromSnapshotWhenConsulFails() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.getSnapshot().setEnabled(true);
+		properties.getSnapshot().setPath(this.temporaryFolder.getRoot().toPath().resolve("consul.snapshot").toString());
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", "YmFy")), 4L, false, 1L));
+		new ConsulPropertySources(properties, LogFactory.getLog(getClass())).createPropertySource("config/app/",
+				consul, (context, index) -> {
+				});
+		assertThat(this.temporaryFolder.getRoot().toPath().resolve("consul.snapshot")).isRegularFile();
+
+		ConsulClient unreachable = mock(ConsulClient.class);
+		when(unreachable.getKVValues(anyString(), nullable(String.class), any(QueryParams.class)))
+				.thenThrow(new IllegalStateException("unreachable"));
+		LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
+		ConsulPropertySource app = new ConsulPropertySources(properties, LogFactory.getLog(getClass()))
+				.createPropertySource("config/app/", unreachable, indexes::put);
+
+		assertThat(app.getProperty("foo")).isEqualTo("bar");
+		assertThat(indexes).containsExactly(entry("config/app/", 4L));
+	}
+
+	@Test
+	public void corruptSnapshotIsSkipped() throws Exception {
+		Path path = this.temporaryFolder.getRoot().toPath().resolve("consul.snapshot");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+			// a valid header followed by a context name far larger than the file
+			out.writeInt(0x43435331);
+			out.writeInt(1);
+			out.writeInt(Integer.MAX_VALUE);
+		}
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.getSnapshot().setEnabled(true);
+		properties.getSnapshot().setStartFromSnapshot(true);
+		properties.getSnapshot().setPath(path.toString());
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", "YmFy")), 4L, false, 1L));
+		LinkedHashMap<String, Long> indexes = new LinkedHashMap<>();
+		ConsulPropertySource app = new ConsulPropertySources(properties, LogFactory.getLog(getClass()))
+				.createPropertySource("config/app/", consul, indexes::put);
+
+		assertThat(app.getProperty("foo")).isEqualTo("bar");
+		assertThat(indexes).containsExactly(entry("config/app/", 4L));
+		verify(consul).getKVValues(eq("config/app/"), nullable(String.class), any(QueryParams.class));
+	}
+
+	@Test
+	public void snapshotIsWrittenOnceAllContextsAreLoaded() throws Exception {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.getSnapshot().setEnabled(true);
+		Path path = this.temporaryFolder.getRoot().toPath().resolve("config").resolve("consul.snapshot");
+		properties.getSnapshot().setPath(path.toString());
+
+		ConsulClient consul = mock(ConsulClient.class);
+		when(consul.getKVValues(anyString(), nullable(String.class), any(QueryParams.class))).thenReturn(
+				new Response<>(Collections.singletonList(getValue("config/app/foo", "YmFy")), 4L, false, 1L));
+		ConsulPropertySources sources = new ConsulPropertySources(properties, LogFactory.getLog(getClass()));
+		sources.setPrefetchContexts(Arrays.asList("config/application/", "config/app/"));
+
+		sources.createPropertySource("config/application/", consul, (context, index) -> {
+		});
+		assertThat(path).doesNotExist();
+
+		sources.createPropertySource("config/app/", consul, (context, index) -> {
+		});
+		assertThat(path).isRegularFile();
+		if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(path))).isEqualTo("rw-------");
+		}
+	}
+
+	@Test
+	public void startFromSnapshotRequiresPath() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.getSnapshot().setEnabled(true);
+		properties.getSnapshot().setStartFromSnapshot(true);
+
+		assertThatThrownBy(() -> new ConsulPropertySources(properties, LogFactory.getLog(getClass())))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("snapshot.path");
+	}
+
+	private GetValue getValue(String key, String value) {
+		GetValue getValue = new GetValue();
+		getValue.setKey(key);
+		getValue.setValue(value);
+		return getValue;
+	}
+
+}
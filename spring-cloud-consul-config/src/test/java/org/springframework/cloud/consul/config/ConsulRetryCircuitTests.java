@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.boot.context.config.ConfigData;
+import org.springframework.boot.context.config.ConfigDataLoaderContext;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.consul.config.ConsulBootstrapper.LoadContext;
+import org.springframework.retry.support.RetryTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class ConsulRetryCircuitTests {
+
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	private final AtomicBoolean available = new AtomicBoolean();
+
+	private final ConsulRetryCircuit circuit = new ConsulRetryCircuit(
+			RetryTemplate.builder().maxAttempts(3).fixedBackoff(1).build());
+
+	@Test
+	public void retriesAreSharedAcrossResources() {
+		assertThatThrownBy(() -> this.circuit.apply(loadContext())).isInstanceOf(IllegalStateException.class);
+		assertThat(this.attempts).hasValue(3);
+		assertThat(this.circuit.isOpen()).isTrue();
+
+		// the circuit is open, the next resources are tried once
+		assertThatThrownBy(() -> this.circuit.apply(loadContext())).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> this.circuit.apply(loadContext())).isInstanceOf(IllegalStateException.class);
+		assertThat(this.attempts).hasValue(5);
+
+		this.available.set(true);
+		assertThat(this.circuit.apply(loadContext())).isNotNull();
+		assertThat(this.circuit.isOpen()).isFalse();
+	}
+
+	private LoadContext loadContext() {
+		return new LoadContext(mock(ConfigDataLoaderContext.class), mock(ConsulConfigDataResource.class),
+				mock(Binder.class), (context, resource) -> {
+					this.attempts.incrementAndGet();
+					if (!this.available.get()) {
+						throw new IllegalStateException("consul is down");
+					}
+					return new ConfigData(Collections.emptyList());
+				});
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.ecwid.consul.transport.HttpResponse;
+import com.ecwid.consul.v1.ConsulRawClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.cloud.consul.StaleReads;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConsulTxnKeyValueReaderTests {
+
+	@Test
+	public void readsExactKeysOfTransaction() {
+		ConsulRawClient rawClient = mock(ConsulRawClient.class);
+		String content = "{\"Results\":["
+				+ "{\"KV\":{\"Key\":\"config/app.yml\",\"Value\":\"Zm9vOiBiYXI=\",\"ModifyIndex\":3}},"
+				+ "{\"KV\":{\"Key\":\"config/app.yml.bak\",\"Value\":\"Zm9vOiBiYXo=\",\"ModifyIndex\":4}}],"
+				+ "\"Errors\":null}";
+		when(rawClient.makePutRequest(eq("/v1/txn"), anyString(), any(), any()))
+				.thenReturn(new HttpResponse(200, "OK", content, 9L, true, 0L));
+
+		Map<String, Response<GetValue>> values = new ConsulTxnKeyValueReader(rawClient)
+				.getValues(Arrays.asList("config/app.yml", "config/app.yaml"), null, null);
+
+		assertThat(values).containsOnlyKeys("config/app.yml", "config/app.yaml");
+		assertThat(values.get("config/app.yml").getValue().getDecodedValue()).isEqualTo("foo: bar");
+		assertThat(values.get("config/app.yml").getConsulIndex()).isEqualTo(9L);
+		assertThat(values.get("config/app.yaml").getValue()).isNull();
+		assertThat(values.get("config/app.yaml").getConsulIndex()).isEqualTo(9L);
+
+		ArgumentCaptor<String> request = ArgumentCaptor.forClass(String.class);
+		verify(rawClient).makePutRequest(eq("/v1/txn"), request.capture(), any(), any());
+		assertThat(request.getValue()).contains("\"Verb\":\"get-tree\"").contains("\"Key\":\"config/app.yaml\"");
+	}
+
+	@Test
+	public void splitsKeysIntoTransactionsOfMaxOperations() {
+		ConsulRawClient rawClient = mock(ConsulRawClient.class);
+		when(rawClient.makePutRequest(eq("/v1/txn"), anyString(), any(), any()))
+				.thenReturn(new HttpResponse(200, "OK", "{\"Results\":null,\"Errors\":null}", 9L, true, 0L));
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i <= ConsulTxnKeyValueReader.MAX_OPERATIONS; i++) {
+			keys.add("config/app" + i + ".yml");
+		}
+
+		Map<String, Response<GetValue>> values = new ConsulTxnKeyValueReader(rawClient).getValues(keys, "token", null);
+
+		assertThat(values).hasSize(keys.size());
+		assertThat(values.get("config/app0.yml").getValue()).isNull();
+		verify(rawClient, times(2)).makePutRequest(eq("/v1/txn"), anyString(), any(), any());
+	}
+
+	@Test
+	public void staleTransactionOutOfBoundIsReadAgain() {
+		ConsulRawClient rawClient = mock(ConsulRawClient.class);
+		String content = "{\"Results\":[{\"KV\":{\"Key\":\"config/app.yml\",\"Value\":\"Zm9vOiBiYXI=\"}}]}";
+		when(rawClient.makePutRequest(eq("/v1/txn"), anyString(), any(), eq(StaleReads.STALE)))
+				.thenReturn(new HttpResponse(200, "OK", content, 8L, false, 500L));
+		when(rawClient.makePutRequest(eq("/v1/txn"), anyString(), any(), eq(QueryParams.DEFAULT)))
+				.thenReturn(new HttpResponse(200, "OK", content, 9L, true, 0L));
+
+		Map<String, Response<GetValue>> values = new ConsulTxnKeyValueReader(rawClient)
+				.getValues(Collections.singletonList("config/app.yml"), null, Duration.ofMillis(100));
+
+		assertThat(values.get("config/app.yml").getValue().getDecodedValue()).isEqualTo("foo: bar");
+		assertThat(values.get("config/app.yml").getConsulIndex()).isEqualTo(9L);
+		verify(rawClient).makePutRequest(eq("/v1/txn"), anyString(), any(), eq(StaleReads.STALE));
+		verify(rawClient).makePutRequest(eq("/v1/txn"), anyString(), any(), eq(QueryParams.DEFAULT));
+	}
+
+}
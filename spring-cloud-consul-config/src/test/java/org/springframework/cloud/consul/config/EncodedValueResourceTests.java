@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Properties;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import org.junit.Test;
+
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.PROPERTIES;
+import static org.springframework.cloud.consul.config.ConsulConfigProperties.Format.YAML;
+
+public class EncodedValueResourceTests {
+
+	@Test
+	public void decodesWhileReading() throws Exception {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			value.append("key").append(i).append(": välue").append(i).append('\n');
+		}
+		EncodedValueResource resource = new EncodedValueResource("config/app/data", encode(value.toString()));
+
+		String decoded = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+
+		assertThat(decoded).isEqualTo(value.toString());
+	}
+
+	@Test
+	public void parsesPropertiesFromEncodedValue() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setFormat(PROPERTIES);
+		ConsulPropertySource source = new ConsulPropertySource("config/app/", mock(ConsulClient.class), properties);
+
+		source.update(Collections.singletonList(getValue("config/app/data", "foo=bär\nbar.baz=1")));
+
+		assertThat(source.getProperty("foo")).isEqualTo("bär");
+		assertThat(source.getProperty("bar.baz")).isEqualTo("1");
+	}
+
+	@Test
+	public void parsesYamlFromEncodedValue() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setFormat(YAML);
+		ConsulPropertySource source = new ConsulPropertySource("config/app/", mock(ConsulClient.class), properties);
+
+		source.update(Collections.singletonList(getValue("config/app/data", "foo: bär\nbar:\n  baz: 1")));
+
+		assertThat(source.getProperty("foo")).isEqualTo("bär");
+		assertThat(source.getProperty("bar.baz")).isEqualTo(1);
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void usesOverriddenStringHook() {
+		ConsulConfigProperties properties = new ConsulConfigProperties();
+		properties.setFormat(PROPERTIES);
+		ConsulPropertySource source = new ConsulPropertySource("config/app/", mock(ConsulClient.class), properties) {
+			@Override
+			protected Properties generateProperties(String value, ConsulConfigProperties.Format format) {
+				Properties props = super.generateProperties(value, format);
+				props.put("decoded", value);
+				return props;
+			}
+		};
+
+		source.update(Collections.singletonList(getValue("config/app/data", "foo=bar")));
+
+		assertThat(source.getProperty("foo")).isEqualTo("bar");
+		assertThat(source.getProperty("decoded")).isEqualTo("foo=bar");
+	}
+
+	private GetValue getValue(String key, String value) {
+		GetValue getValue = new GetValue();
+		getValue.setKey(key);
+		getValue.setValue(encode(value));
+		return getValue;
+	}
+
+	private String encode(String value) {
+		return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
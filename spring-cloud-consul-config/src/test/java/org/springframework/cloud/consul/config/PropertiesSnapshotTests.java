@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropertiesSnapshotTests {
+
+	@Test
+	public void propertiesAreLookedUp() {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			properties.put("key" + i, "value" + i);
+		}
+		properties.put("empty", null);
+
+		PropertiesSnapshot snapshot = new PropertiesSnapshot(properties);
+
+		assertThat(snapshot.getNames()).hasSize(1001).startsWith("key0", "key1");
+		for (int i = 0; i < 1000; i++) {
+			assertThat(snapshot.get("key" + i)).isEqualTo("value" + i);
+		}
+		assertThat(snapshot.contains("empty")).isTrue();
+		assertThat(snapshot.get("empty")).isNull();
+		assertThat(snapshot.contains("key1000")).isFalse();
+		assertThat(snapshot.contains(null)).isFalse();
+		assertThat(snapshot.getVersion()).isEqualTo(1);
+	}
+
+	@Test
+	public void namesArrayIsKeptWhileNamesDontChange() {
+		Map<String, Object> properties = new LinkedHashMap<>();
+		properties.put("foo", "bar");
+		PropertiesSnapshot first = new PropertiesSnapshot(properties);
+
+		properties.put("foo", "baz");
+		PropertiesSnapshot second = new PropertiesSnapshot(properties, first);
+
+		properties.put("other", "value");
+		PropertiesSnapshot third = new PropertiesSnapshot(properties, second);
+
+		assertThat(second.getNames()).isSameAs(first.getNames());
+		assertThat(second.get("foo")).isEqualTo("baz");
+		assertThat(second.getVersion()).isEqualTo(2);
+		assertThat(third.getNames()).isNotSameAs(second.getNames()).containsExactly("foo", "other");
+		assertThat(third.getVersion()).isEqualTo(3);
+	}
+
+}
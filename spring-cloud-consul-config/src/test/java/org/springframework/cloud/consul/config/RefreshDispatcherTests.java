@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RefreshDispatcherTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void teardown() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void itemsArrivingDuringDispatchAreMergedByKey() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+		List<List<String>> batches = new CopyOnWriteArrayList<>();
+		RefreshDispatcher<Character, String> dispatcher = new RefreshDispatcher<>(this.executor,
+				item -> item.charAt(0), (item, later) -> item + "+" + later, items -> {
+					started.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					batches.add(items);
+					done.countDown();
+				});
+
+		dispatcher.dispatch(Collections.singletonList("a1"));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		// the caller doesn't wait for the running dispatch
+		dispatcher.dispatch(Arrays.asList("a2", "b1"));
+		dispatcher.dispatch(Collections.singletonList("a3"));
+		assertThat(dispatcher.getPendingCount()).isEqualTo(2);
+		release.countDown();
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(batches).containsExactly(Collections.singletonList("a1"), Arrays.asList("a2+a3", "b1"));
+	}
+
+}
@@ -21,6 +21,7 @@ import com.ecwid.consul.v1.ConsulClient;
 import com.ecwid.consul.v1.ConsulRawClient;
 import org.aspectj.lang.annotation.Aspect;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.actuate.autoconfigure.health.ConditionalOnEnabledHealthIndicator;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
@@ -52,13 +53,42 @@ public class ConsulAutoConfiguration {
 		return new ConsulProperties();
 	}
 
+	/**
+	 * The transport of the default {@link ConsulClient}, for requests the client has no
+	 * method for. Not created for a custom {@link ConsulClient}, so it is not bypassed.
+	 * @param consulProperties the consul properties
+	 * @return the raw client
+	 */
+	@Bean
+	@ConditionalOnMissingBean({ ConsulRawClient.class, ConsulClient.class })
+	public ConsulRawClient consulRawClient(ConsulProperties consulProperties) {
+		return createConsulRawClient(consulProperties);
+	}
+
 	@Bean
 	@ConditionalOnMissingBean
+	public ConsulClient consulClient(ConsulProperties consulProperties,
+			ObjectProvider<ConsulRawClient> consulRawClient) {
+		return new ConsulClient(consulRawClient.getIfAvailable(() -> createConsulRawClient(consulProperties)));
+	}
+
+	/**
+	 * @param consulProperties the consul properties
+	 * @return a client with a transport of its own
+	 * @deprecated since 3.0.4, the client bean is created by
+	 * {@link #consulClient(ConsulProperties, ObjectProvider)} to share its transport
+	 * with the {@link ConsulRawClient} bean
+	 */
+	@Deprecated
 	public ConsulClient consulClient(ConsulProperties consulProperties) {
 		return createConsulClient(consulProperties);
 	}
 
 	public static ConsulClient createConsulClient(ConsulProperties consulProperties) {
+		return new ConsulClient(createConsulRawClient(consulProperties));
+	}
+
+	public static ConsulRawClient createConsulRawClient(ConsulProperties consulProperties) {
 		final String agentPath = consulProperties.getPath();
 		final String agentHost = StringUtils.hasLength(consulProperties.getScheme())
 				? consulProperties.getScheme() + "://" + consulProperties.getHost() : consulProperties.getHost();
@@ -79,7 +109,7 @@ public class ConsulAutoConfiguration {
 			builder.setPath(normalizedAgentPath);
 		}
 
-		return new ConsulClient(builder.build());
+		return builder.build();
 	}
 
 	@Configuration(proxyBeanMethods = false)
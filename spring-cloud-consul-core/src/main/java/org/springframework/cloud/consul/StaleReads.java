@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import com.ecwid.consul.v1.ConsistencyMode;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Issues Consul reads with bounded staleness. A read is first served by any server in
+ * {@code stale} mode, and issued again in the given consistent mode if the server was
+ * out of contact with the leader for longer than the max staleness, as reported by
+ * {@code X-Consul-LastContact}, or if it is behind the index the caller already saw.
+ */
+public final class StaleReads {
+
+	private static final Log log = LogFactory.getLog(StaleReads.class);
+
+	/**
+	 * Parameters of a non-blocking stale read.
+	 */
+	public static final QueryParams STALE = new QueryParams(ConsistencyMode.STALE);
+
+	private StaleReads() {
+		throw new IllegalStateException("Can't instantiate a utility class");
+	}
+
+	/**
+	 * Issues a non-blocking read, falling back to a read in the default mode.
+	 * @param maxStaleness the max staleness, null to only read in the default mode
+	 * @param query the read to issue with the given parameters
+	 * @param <T> the type of the value read
+	 * @return the response of the read
+	 */
+	public static <T> Response<T> read(Duration maxStaleness, Function<QueryParams, Response<T>> query) {
+		return read(maxStaleness, STALE, QueryParams.DEFAULT, query);
+	}
+
+	/**
+	 * Issues a read.
+	 * @param maxStaleness the max staleness, null to only read with the consistent
+	 * parameters
+	 * @param staleParams the parameters of the stale read, the index of a blocking read is
+	 * the least index accepted
+	 * @param consistentParams the parameters of the read issued if the stale read is out
+	 * of bounds
+	 * @param query the read to issue with the given parameters
+	 * @param <T> the type of the value read
+	 * @return the response of the read
+	 */
+	public static <T> Response<T> read(Duration maxStaleness, QueryParams staleParams, QueryParams consistentParams,
+			Function<QueryParams, Response<T>> query) {
+		if (maxStaleness == null) {
+			return query.apply(consistentParams);
+		}
+		Response<T> response = query.apply(staleParams);
+		if (isWithinBounds(response, maxStaleness, staleParams.getIndex())) {
+			return response;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Stale read with last contact " + response.getConsulLastContact() + "ms and index "
+					+ response.getConsulIndex() + " is out of bounds, reading it again");
+		}
+		return query.apply(consistentParams);
+	}
+
+	/**
+	 * @param response the response of a stale read
+	 * @param maxStaleness the max staleness
+	 * @param minIndex the least index accepted, or a negative value for any index
+	 * @return true if the response can be used
+	 */
+	static boolean isWithinBounds(Response<?> response, Duration maxStaleness, long minIndex) {
+		Long lastContact = response.getConsulLastContact();
+		if (lastContact != null && lastContact > maxStaleness.toMillis()) {
+			return false;
+		}
+		// a server lagging behind may answer with an index that went backwards
+		return minIndex <= 0 || response.getConsulIndex() == null || response.getConsulIndex() >= minIndex;
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Backoff state of a single watch. Every consecutive failure doubles (by default) the
+ * upper bound of the backoff interval up to a maximum, and the actual interval is picked
+ * at random between zero and that bound ("full jitter") so that watches of many
+ * instances don't retry in lockstep. A successful query resets the backoff.
+ */
+public class WatchBackoff {
+
+	private final WatchBackoffProperties properties;
+
+	private final LongSupplier clock;
+
+	private final LongUnaryOperator random;
+
+	private int failures;
+
+	private long interval;
+
+	private long nextAttemptTime;
+
+	public WatchBackoff(WatchBackoffProperties properties) {
+		this(properties, System::currentTimeMillis, bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+	}
+
+	WatchBackoff(WatchBackoffProperties properties, LongSupplier clock, LongUnaryOperator random) {
+		this.properties = properties;
+		this.clock = clock;
+		this.random = random;
+	}
+
+	/**
+	 * Records a failed query and computes when the next query may be made.
+	 * @return the backoff interval in milliseconds
+	 */
+	public synchronized long failed() {
+		this.failures++;
+		if (!this.properties.isEnabled()) {
+			return 0;
+		}
+		double bound = this.properties.getInitialInterval()
+				* Math.pow(this.properties.getMultiplier(), this.failures - 1);
+		long cap = Math.min((long) Math.min(bound, Long.MAX_VALUE), this.properties.getMaxInterval());
+		this.interval = this.random.applyAsLong(Math.max(0, cap));
+		this.nextAttemptTime = this.clock.getAsLong() + this.interval;
+		return this.interval;
+	}
+
+	/**
+	 * Records a successful query and resets the backoff.
+	 */
+	public synchronized void succeeded() {
+		this.failures = 0;
+		this.interval = 0;
+		this.nextAttemptTime = 0;
+	}
+
+	/**
+	 * @return true if the watch must not query yet
+	 */
+	public synchronized boolean isBackingOff() {
+		return this.clock.getAsLong() < this.nextAttemptTime;
+	}
+
+	/**
+	 * @return the number of consecutive failed queries
+	 */
+	public synchronized int getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * @return the current backoff interval in milliseconds, 0 if not backing off
+	 */
+	public synchronized long getInterval() {
+		return this.interval;
+	}
+
+	/**
+	 * @return the earliest time in epoch millis of the next query, 0 if not backing off
+	 */
+	public synchronized long getNextAttemptTime() {
+		return this.nextAttemptTime;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return new ToStringCreator(this).append("failures", this.failures).append("interval", this.interval)
+				.append("nextAttemptTime", this.nextAttemptTime).toString();
+	}
+
+}
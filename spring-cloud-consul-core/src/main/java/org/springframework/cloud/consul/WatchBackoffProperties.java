@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Backoff settings for a watch whose blocking queries fail.
+ */
+public class WatchBackoffProperties {
+
+	/** If failing watches back off. */
+	private boolean enabled = true;
+
+	/** Initial backoff interval in milliseconds. */
+	private long initialInterval = 1000;
+
+	/** Multiplier for next interval. */
+	private double multiplier = 2;
+
+	/** Maximum interval for backoff in milliseconds. */
+	private long maxInterval = 60000;
+
+	public WatchBackoffProperties() {
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public long getInitialInterval() {
+		return this.initialInterval;
+	}
+
+	public void setInitialInterval(long initialInterval) {
+		this.initialInterval = initialInterval;
+	}
+
+	public double getMultiplier() {
+		return this.multiplier;
+	}
+
+	public void setMultiplier(double multiplier) {
+		this.multiplier = multiplier;
+	}
+
+	public long getMaxInterval() {
+		return this.maxInterval;
+	}
+
+	public void setMaxInterval(long maxInterval) {
+		this.maxInterval = maxInterval;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("enabled", this.enabled).append("initialInterval", this.initialInterval)
+				.append("multiplier", this.multiplier).append("maxInterval", this.maxInterval).toString();
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Creates the threads that run Consul watches. A watch parks its thread in a blocking
+ * query for up to the wait time, so on Java 21 and later the threads are virtual
+ * threads, which only take up memory for the stack actually in use while parked. On
+ * older Java versions regular daemon threads are created.
+ */
+public final class WatchThreads {
+
+	private static final Log log = LogFactory.getLog(WatchThreads.class);
+
+	private static final boolean VIRTUAL = getJavaFeatureVersion() >= 21;
+
+	private WatchThreads() {
+		throw new IllegalStateException("Can't instantiate a utility class");
+	}
+
+	/**
+	 * @return true if watches run on virtual threads
+	 */
+	public static boolean isVirtual() {
+		return VIRTUAL;
+	}
+
+	/**
+	 * Creates a factory for watch threads.
+	 * @param threadNamePrefix the prefix of the thread names
+	 * @return the thread factory
+	 */
+	public static ThreadFactory newThreadFactory(String threadNamePrefix) {
+		if (isVirtual()) {
+			try {
+				return newVirtualThreadFactory(threadNamePrefix);
+			}
+			catch (Exception e) {
+				log.warn("Unable to create virtual threads, falling back to platform threads", e);
+			}
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+
+	/**
+	 * Creates a task scheduler for watches. The scheduler still needs to be initialized
+	 * if it is not registered as a bean.
+	 * @param threadNamePrefix the prefix of the thread names
+	 * @param poolSize the maximum number of watches running at the same time
+	 * @return the task scheduler
+	 */
+	public static ThreadPoolTaskScheduler newTaskScheduler(String threadNamePrefix, int poolSize) {
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.setThreadNamePrefix(threadNamePrefix);
+		taskScheduler.setThreadFactory(newThreadFactory(threadNamePrefix));
+		taskScheduler.setPoolSize(Math.max(1, poolSize));
+		return taskScheduler;
+	}
+
+	private static ThreadFactory newVirtualThreadFactory(String threadNamePrefix) throws Exception {
+		// Thread.ofVirtual().name(threadNamePrefix, 1).factory()
+		ClassLoader classLoader = WatchThreads.class.getClassLoader();
+		Class<?> builderClass = ClassUtils.forName("java.lang.Thread$Builder", classLoader);
+		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 1L);
+		return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+	}
+
+	/**
+	 * Virtual threads are a preview feature before Java 21, where {@code Thread.ofVirtual}
+	 * exists but fails unless previews are enabled.
+	 * @return the feature version of the running Java, 8 before {@code Runtime.version()}
+	 */
+	static int getJavaFeatureVersion() {
+		// Runtime.version().feature()
+		Method versionMethod = ReflectionUtils.findMethod(Runtime.class, "version");
+		if (versionMethod == null) {
+			return 8;
+		}
+		Object version = ReflectionUtils.invokeMethod(versionMethod, null);
+		Method featureMethod = ReflectionUtils.findMethod(versionMethod.getReturnType(), "feature");
+		if (featureMethod == null) {
+			// Java 9, which only has major()
+			return 9;
+		}
+		return (int) ReflectionUtils.invokeMethod(featureMethod, version);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ecwid.consul.v1.ConsistencyMode;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link StaleReads}.
+ */
+public class StaleReadsTests {
+
+	private final List<QueryParams> queries = new ArrayList<>();
+
+	@Test
+	public void readsConsistentlyWithoutMaxStaleness() {
+		Response<String> response = StaleReads.read(null, params -> respond(params, 0L, 1L));
+
+		assertThat(response.getValue()).isEqualTo("DEFAULT");
+		assertThat(this.queries).containsExactly(QueryParams.DEFAULT);
+	}
+
+	@Test
+	public void staleReadWithinBoundIsUsed() {
+		Response<String> response = StaleReads.read(Duration.ofMillis(100), params -> respond(params, 100L, 1L));
+
+		assertThat(response.getValue()).isEqualTo("STALE");
+		assertThat(this.queries).containsExactly(StaleReads.STALE);
+	}
+
+	@Test
+	public void staleReadOutOfBoundIsReadAgain() {
+		Response<String> response = StaleReads.read(Duration.ofMillis(100), params -> respond(params, 101L, 1L));
+
+		assertThat(response.getValue()).isEqualTo("DEFAULT");
+		assertThat(this.queries).containsExactly(StaleReads.STALE, QueryParams.DEFAULT);
+	}
+
+	@Test
+	public void staleReadBehindIndexIsReadAgain() {
+		QueryParams stale = QueryParams.Builder.builder().setConsistencyMode(ConsistencyMode.STALE).setWaitTime(10)
+				.setIndex(5).build();
+		QueryParams consistent = new QueryParams(10, 5);
+
+		Response<String> response = StaleReads.read(Duration.ofSeconds(1), stale, consistent,
+				params -> respond(params, 0L, params == stale ? 4L : 6L));
+
+		assertThat(response.getValue()).isEqualTo("DEFAULT");
+		assertThat(response.getConsulIndex()).isEqualTo(6L);
+		assertThat(this.queries).containsExactly(stale, consistent);
+	}
+
+	private Response<String> respond(QueryParams params, long lastContact, long index) {
+		this.queries.add(params);
+		return new Response<>(params.getConsistencyMode().name(), index, true, lastContact);
+	}
+
+}
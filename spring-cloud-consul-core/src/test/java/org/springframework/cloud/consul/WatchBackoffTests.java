@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WatchBackoff}.
+ */
+public class WatchBackoffTests {
+
+	private final AtomicLong now = new AtomicLong(1000);
+
+	private final WatchBackoffProperties properties = new WatchBackoffProperties();
+
+	@Test
+	public void intervalGrowsUpToMaxInterval() {
+		this.properties.setMaxInterval(5000);
+		// always pick the upper bound
+		WatchBackoff backoff = new WatchBackoff(this.properties, this.now::get, bound -> bound);
+
+		assertThat(backoff.failed()).isEqualTo(1000);
+		assertThat(backoff.failed()).isEqualTo(2000);
+		assertThat(backoff.failed()).isEqualTo(4000);
+		assertThat(backoff.failed()).isEqualTo(5000);
+		assertThat(backoff.failed()).isEqualTo(5000);
+		assertThat(backoff.getFailures()).isEqualTo(5);
+		assertThat(backoff.getNextAttemptTime()).isEqualTo(6000);
+	}
+
+	@Test
+	public void intervalIsJittered() {
+		WatchBackoff backoff = new WatchBackoff(this.properties, this.now::get, bound -> bound / 4);
+
+		assertThat(backoff.failed()).isEqualTo(250);
+		assertThat(backoff.failed()).isEqualTo(500);
+	}
+
+	@Test
+	public void successResetsBackoff() {
+		WatchBackoff backoff = new WatchBackoff(this.properties, this.now::get, bound -> bound);
+
+		backoff.failed();
+		assertThat(backoff.isBackingOff()).isTrue();
+		this.now.addAndGet(1000);
+		assertThat(backoff.isBackingOff()).isFalse();
+
+		backoff.failed();
+		backoff.succeeded();
+		assertThat(backoff.isBackingOff()).isFalse();
+		assertThat(backoff.getFailures()).isZero();
+		assertThat(backoff.failed()).isEqualTo(1000);
+	}
+
+	@Test
+	public void disabledBackoffNeverBacksOff() {
+		this.properties.setEnabled(false);
+		WatchBackoff backoff = new WatchBackoff(this.properties, this.now::get, bound -> bound);
+
+		assertThat(backoff.failed()).isZero();
+		assertThat(backoff.isBackingOff()).isFalse();
+		assertThat(backoff.getFailures()).isEqualTo(1);
+	}
+
+}
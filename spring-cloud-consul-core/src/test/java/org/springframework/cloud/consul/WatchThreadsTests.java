@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.consul;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WatchThreads}.
+ */
+public class WatchThreadsTests {
+
+	@Test
+	public void taskSchedulerRunsWatchesOnNamedThreads() throws Exception {
+		ThreadPoolTaskScheduler taskScheduler = WatchThreads.newTaskScheduler("test-watch-", 2);
+		taskScheduler.initialize();
+		try {
+			AtomicReference<Thread> thread = new AtomicReference<>();
+			CountDownLatch latch = new CountDownLatch(1);
+			taskScheduler.execute(() -> {
+				thread.set(Thread.currentThread());
+				latch.countDown();
+			});
+
+			assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(thread.get().getName()).startsWith("test-watch-");
+			assertThat(isVirtual(thread.get())).isEqualTo(WatchThreads.isVirtual());
+		}
+		finally {
+			taskScheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void runsOnVirtualThreadsFromJava21() {
+		assertThat(WatchThreads.getJavaFeatureVersion()).isGreaterThanOrEqualTo(8);
+		assertThat(WatchThreads.isVirtual()).isEqualTo(WatchThreads.getJavaFeatureVersion() >= 21);
+	}
+
+	private boolean isVirtual(Thread thread) throws Exception {
+		try {
+			return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+}
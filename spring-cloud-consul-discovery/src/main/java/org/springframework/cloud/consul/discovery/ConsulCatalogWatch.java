@@ -32,6 +32,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.consul.WatchBackoff;
+import org.springframework.cloud.consul.WatchThreads;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.SmartLifecycle;
@@ -44,6 +46,11 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
  */
 public class ConsulCatalogWatch implements ApplicationEventPublisherAware, SmartLifecycle {
 
+	/**
+	 * Prefix of the names of the threads running the watch.
+	 */
+	static final String CATALOG_WATCH_THREAD_NAME_PREFIX = "consul-catalog-watch-";
+
 	private static final Log log = LogFactory.getLog(ConsulDiscoveryClient.class);
 
 	private final ConsulDiscoveryProperties properties;
@@ -56,6 +63,8 @@ public class ConsulCatalogWatch implements ApplicationEventPublisherAware, Smart
 
 	private final AtomicBoolean running = new AtomicBoolean(false);
 
+	private final WatchBackoff backoff;
+
 	private ApplicationEventPublisher publisher;
 
 	private ScheduledFuture<?> watchFuture;
@@ -68,10 +77,11 @@ public class ConsulCatalogWatch implements ApplicationEventPublisherAware, Smart
 		this.properties = properties;
 		this.consul = consul;
 		this.taskScheduler = taskScheduler;
+		this.backoff = new WatchBackoff(properties.getCatalogServicesWatchBackoff());
 	}
 
 	private static ThreadPoolTaskScheduler getTaskScheduler() {
-		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		ThreadPoolTaskScheduler taskScheduler = WatchThreads.newTaskScheduler(CATALOG_WATCH_THREAD_NAME_PREFIX, 1);
 		taskScheduler.initialize();
 		return taskScheduler;
 	}
@@ -119,8 +129,22 @@ public class ConsulCatalogWatch implements ApplicationEventPublisherAware, Smart
 		return 0;
 	}
 
+	/**
+	 * @return the backoff state of the catalog watch
+	 */
+	public WatchBackoff getBackoff() {
+		return this.backoff;
+	}
+
 	@Timed("consul.watch-catalog-services")
 	public void catalogServicesWatch() {
+		// 查询失败后退避，避免 agent 恢复时所有实例同时重连
+		if (this.backoff.isBackingOff()) {
+			if (log.isTraceEnabled()) {
+				log.trace("Backing off from watching Consul CatalogServices: " + this.backoff);
+			}
+			return;
+		}
 		try {
 			// 确认索引数据
 			long index = -1;
@@ -133,6 +157,7 @@ public class ConsulCatalogWatch implements ApplicationEventPublisherAware, Smart
 					.setQueryParams(new QueryParams(this.properties.getCatalogServicesWatchTimeout(), index))
 					.setToken(this.properties.getAclToken()).build();
 			Response<Map<String, List<String>>> response = this.consul.getCatalogServices(request);
+			this.backoff.succeeded();
 			// 获取当前索引
 			Long consulIndex = response.getConsulIndex();
 			// 在当前索引存在的情况下设置索引
@@ -147,7 +172,8 @@ public class ConsulCatalogWatch implements ApplicationEventPublisherAware, Smart
 			this.publisher.publishEvent(new HeartbeatEvent(this, consulIndex));
 		}
 		catch (Exception e) {
-			log.error("Error watching Consul CatalogServices", e);
+			long interval = this.backoff.failed();
+			log.error("Error watching Consul CatalogServices, backing off for " + interval + "ms", e);
 		}
 	}
 
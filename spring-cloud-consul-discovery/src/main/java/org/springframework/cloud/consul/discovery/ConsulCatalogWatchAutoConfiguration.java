@@ -25,10 +25,10 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.client.ConditionalOnDiscoveryEnabled;
 import org.springframework.cloud.consul.ConditionalOnConsulEnabled;
+import org.springframework.cloud.consul.WatchThreads;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * Auto configuration for the catalog watcher.
@@ -57,7 +57,7 @@ public class ConsulCatalogWatchAutoConfiguration {
 
 	@Bean(name = CATALOG_WATCH_TASK_SCHEDULER_NAME)
 	public TaskScheduler catalogWatchTaskScheduler() {
-		return new ThreadPoolTaskScheduler();
+		return WatchThreads.newTaskScheduler(ConsulCatalogWatch.CATALOG_WATCH_THREAD_NAME_PREFIX, 1);
 	}
 
 }
@@ -29,6 +29,7 @@ import com.ecwid.consul.v1.health.model.HealthService;
 
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.consul.StaleReads;
 
 /**
  * @author Spencer Gibb
@@ -61,8 +62,13 @@ public class ConsulDiscoveryClient implements DiscoveryClient {
 
 	@Override
 	public List<ServiceInstance> getInstances(final String serviceId) {
-		// 通过getInstances方法获取服务实例集合
-		return getInstances(serviceId, new QueryParams(this.properties.getConsistencyMode()));
+		List<ServiceInstance> instances = new ArrayList<>();
+		// with a max staleness any server answers, unless it is out of bounds
+		Response<List<HealthService>> services = StaleReads.read(this.properties.getMaxStaleness(),
+				StaleReads.STALE, new QueryParams(this.properties.getConsistencyMode()),
+				params -> getHealthServices(serviceId, params));
+		addInstancesToList(instances, serviceId, services);
+		return instances;
 	}
 
 	public List<ServiceInstance> getInstances(final String serviceId, final QueryParams queryParams) {
@@ -70,14 +76,13 @@ public class ConsulDiscoveryClient implements DiscoveryClient {
 		List<ServiceInstance> instances = new ArrayList<>();
 
 		// 搜索并且向实例集合中加入数据
-		addInstancesToList(instances, serviceId, queryParams);
+		addInstancesToList(instances, serviceId, getHealthServices(serviceId, queryParams));
 
 		// 返回实例集合
 		return instances;
 	}
 
-
-	private void addInstancesToList(List<ServiceInstance> instances, String serviceId, QueryParams queryParams) {
+	private Response<List<HealthService>> getHealthServices(String serviceId, QueryParams queryParams) {
 		// 创建请求构造器对象
 		HealthServicesRequest.Builder requestBuilder = HealthServicesRequest.newBuilder()
 			.setPassing(properties.isQueryPassing()).setQueryParams(queryParams).setToken(properties.getAclToken());
@@ -91,8 +96,11 @@ public class ConsulDiscoveryClient implements DiscoveryClient {
 		HealthServicesRequest request = requestBuilder.build();
 
 		// 发送请求
-		Response<List<HealthService>> services = this.client.getHealthServices(serviceId, request);
+		return this.client.getHealthServices(serviceId, request);
+	}
 
+	private void addInstancesToList(List<ServiceInstance> instances, String serviceId,
+			Response<List<HealthService>> services) {
 		// 处理响应结果将其放入到服务实例对象集合中
 		for (HealthService service : services.getValue()) {
 			instances.add(new ConsulServiceInstance(service, serviceId));
@@ -102,10 +110,12 @@ public class ConsulDiscoveryClient implements DiscoveryClient {
 	public List<ServiceInstance> getAllInstances() {
 		List<ServiceInstance> instances = new ArrayList<>();
 
-		Response<Map<String, List<String>>> services = this.client
-				.getCatalogServices(CatalogServicesRequest.newBuilder().setQueryParams(QueryParams.DEFAULT).build());
+		Response<Map<String, List<String>>> services = StaleReads.read(this.properties.getMaxStaleness(),
+				params -> this.client
+						.getCatalogServices(CatalogServicesRequest.newBuilder().setQueryParams(params).build()));
 		for (String serviceId : services.getValue().keySet()) {
-			addInstancesToList(instances, serviceId, QueryParams.DEFAULT);
+			addInstancesToList(instances, serviceId, StaleReads.read(this.properties.getMaxStaleness(),
+					params -> getHealthServices(serviceId, params)));
 		}
 		return instances;
 	}
@@ -113,10 +123,11 @@ public class ConsulDiscoveryClient implements DiscoveryClient {
 	@Override
 	public List<String> getServices() {
 		// 创建请求对象
-		CatalogServicesRequest request = CatalogServicesRequest.newBuilder().setQueryParams(QueryParams.DEFAULT)
-			.setToken(this.properties.getAclToken()).build();
+		CatalogServicesRequest.Builder request = CatalogServicesRequest.newBuilder()
+			.setToken(this.properties.getAclToken());
 		// 请求后将请求 结果返回
-		return new ArrayList<>(this.client.getCatalogServices(request).getValue().keySet());
+		return new ArrayList<>(StaleReads.read(this.properties.getMaxStaleness(),
+				params -> this.client.getCatalogServices(request.setQueryParams(params).build())).getValue().keySet());
 	}
 
 	@Override
@@ -19,6 +19,8 @@ package org.springframework.cloud.consul.discovery;
 import com.ecwid.consul.v1.ConsistencyMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.cloud.consul.WatchBackoffProperties;
 import org.springframework.cloud.commons.util.InetUtils;
 import org.springframework.cloud.commons.util.InetUtils.HostInfo;
 import org.springframework.cloud.commons.util.InetUtilsProperties;
@@ -26,6 +28,7 @@ import org.springframework.core.style.ToStringCreator;
 import org.springframework.lang.Nullable;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -160,6 +163,13 @@ public class ConsulDiscoveryProperties {
 	 */
 	private int catalogServicesWatchTimeout = 2;
 
+	/**
+	 * Backoff of the catalog watch when its queries fail, for example while the agent
+	 * is down.
+	 */
+	@NestedConfigurationProperty
+	private WatchBackoffProperties catalogServicesWatchBackoff = new WatchBackoffProperties();
+
 	/**
 	 * Service name.
 	 */
@@ -190,6 +200,13 @@ public class ConsulDiscoveryProperties {
 	 */
 	private ConsistencyMode consistencyMode = ConsistencyMode.DEFAULT;
 
+	/**
+	 * Max staleness of service queries served by any consul server instead of the
+	 * leader. A query answered by a server that was out of contact with the leader for
+	 * longer is issued again with the consistency mode. Not used if not set.
+	 */
+	private Duration maxStaleness;
+
 	/**
 	 * Service instance zone comes from metadata. This allows changing the metadata tag
 	 * name.
@@ -491,6 +508,14 @@ public class ConsulDiscoveryProperties {
 		this.catalogServicesWatchTimeout = catalogServicesWatchTimeout;
 	}
 
+	public WatchBackoffProperties getCatalogServicesWatchBackoff() {
+		return this.catalogServicesWatchBackoff;
+	}
+
+	public void setCatalogServicesWatchBackoff(WatchBackoffProperties catalogServicesWatchBackoff) {
+		this.catalogServicesWatchBackoff = catalogServicesWatchBackoff;
+	}
+
 	public String getServiceName() {
 		return this.serviceName;
 	}
@@ -539,6 +564,14 @@ public class ConsulDiscoveryProperties {
 		this.consistencyMode = consistencyMode;
 	}
 
+	public Duration getMaxStaleness() {
+		return this.maxStaleness;
+	}
+
+	public void setMaxStaleness(Duration maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
 	public String getDefaultZoneMetadataName() {
 		return this.defaultZoneMetadataName;
 	}
@@ -676,7 +709,9 @@ public class ConsulDiscoveryProperties {
 		return new ToStringCreator(this).append("aclToken", this.aclToken)
 			.append("catalogServicesWatchDelay", this.catalogServicesWatchDelay)
 			.append("catalogServicesWatchTimeout", this.catalogServicesWatchTimeout)
-			.append("consistencyMode", this.consistencyMode).append("datacenters", this.datacenters)
+			.append("catalogServicesWatchBackoff", this.catalogServicesWatchBackoff)
+			.append("consistencyMode", this.consistencyMode).append("maxStaleness", this.maxStaleness)
+			.append("datacenters", this.datacenters)
 			.append("defaultQueryTag", this.defaultQueryTag)
 			.append("defaultZoneMetadataName", this.defaultZoneMetadataName).append("deregister", this.deregister)
 			.append("enabled", this.enabled).append("enableTagOverride", this.enableTagOverride)